@@ -1,5 +1,10 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import lang.*;
 
@@ -42,7 +47,8 @@ class TestCase
 				"2^(a-1)^2",
 				"2^(a-1)^a",
 				"3x(5+9(x-10)^2)",
-				"a(bcw+bdw+cdw)-e(fgw+fhw+ghw)=0");
+				"a(bcw+bdw+cdw)-e(fgw+fhw+ghw)=0",
+				"(x+1)(x+1)=x*x^2-x^3");
 		Collections.addAll(standard,
 				"z^2-5z+6=0",
 				"5a^2-3a-27=0",
@@ -66,7 +72,8 @@ class TestCase
 				"2^(a^2-2a+1)",
 				"2^((a-1)^a)",
 				"27x^3-540x^2+2715x",
-				"abcw+abdw+acdw-efgw-efhw-eghw=0");
+				"abcw+abdw+acdw-efgw-efhw-eghw=0",
+				"x^2+2x+1=0");
 		Collections.addAll(factored,"[z-2, z-3]",
 				"[a+3\u221a(61)/10-3/10, a-3/10-3\u221a(61)/10]",
 				"[x+6, x-6]",
@@ -89,7 +96,8 @@ class TestCase
 				"[2^(a^2-2a+1)]",
 				"[2^((a-1)^a)]",
 				"[3x, x+\u221a(5)"+imag+"/3-10, x-\u221a(5)"+imag+"/3-10]",
-				"[w, abc+abd+acd-efg-efh-egh]");
+				"[w, abc+abd+acd-efg-efh-egh]",
+				"[x+1, x+1]");
         ArrayList<String> simpSolutions = new ArrayList<>();
 		Collections.addAll(simpSolutions,"z=3 or 2",
 				"a=3/10-3(61)^(1/2)/10 or 3(61)^(1/2)/10+3/10",
@@ -112,7 +120,8 @@ class TestCase
 						",e=-abc(-fg-fh-gh)^-1-abd(-fg-fh-gh)^-1-acd(-fg-fh-gh)^-1,f=-abc(-eg-eh)^-1-abd(-eg-eh)^-1-acd(-eg-eh)^-1+egh(-eg-eh)^-1" +
 						",g=-abc(-ef-eh)^-1-abd(-ef-eh)^-1-acd(-ef-eh)^-1+efh(-ef-eh)^-1,w=0," +
 						"a=efg(bc+bd+cd)^-1+efh(bc+bd+cd)^-1+egh(bc+bd+cd)^-1,c=-abd(ab+ad)^-1+efg(ab+ad)^-1+efh(ab+ad)^-1+egh(ab+ad)^-1" +
-						",d=-abc(ab+ac)^-1+efg(ab+ac)^-1+efh(ab+ac)^-1+egh(ab+ac)^-1");
+						",d=-abc(ab+ac)^-1+efg(ab+ac)^-1+efh(ab+ac)^-1+egh(ab+ac)^-1",
+				"x=-1");
         for(String s : simpSolutions){
             HashSet<Solution> adding = new HashSet<>();
             for(String current : s.split(",")){
@@ -169,5 +178,207 @@ class TestCase
                 break;
 			}
         }
+		// Parentheses nested too deeply to read without running out of stack should be rejected as badly formatted,
+		// while reasonable nesting is still read.
+		if(!new Expression(nest(100)).toString().equals("x")) {
+			System.out.println("100 nested parentheses read as: "+new Expression(nest(100)));
+		}
+		try {
+			new Expression(nest(20000));
+			System.out.println("20000 nested parentheses were read rather than rejected.");
+		}catch(MathFormatException e) {
+		}catch(StackOverflowError e) {
+			System.out.println("20000 nested parentheses overflowed the stack.");
+		}
+		// Numbers read from a String share the common Constants rather than each being made anew.
+		if(Constant.valueOf("1")!=Constant.ONE||Constant.valueOf("-0.5")!=Constant.valueOf(-1,2)) {
+			System.out.println("1 and -0.5 were read as new Constants rather than shared ones.");
+		}
+		// The degree, variables and hash code of an Expression are kept once found, and found again once it changes.
+		Expression cached=new Expression("x^3+2x^2y+y");
+		if(cached.getDegree()!=cached.getDegree()||!cached.getDegree().equals(Constant.valueOf(3))) {
+			System.out.println("The degree of x^3+2x^2y+y was found as "+cached.getDegree()+" and not kept.");
+		}
+		cached.getVars().clear();
+		if(!cached.getVars().equals(new HashSet<>(Arrays.asList('x','y')))) {
+			System.out.println("The variables of x^3+2x^2y+y were found as "+cached.getVars());
+		}
+		cached.hashCode();
+		cached.setEquation(true);
+		if(cached.hashCode()!=new Expression("x^3+2x^2y+y=0").hashCode()) {
+			System.out.println("x^3+2x^2y+y kept its hash code after being made an equation.");
+		}
+		// Roots of numbers too big for a double, with an index too big to shift them into one by rounding down.
+		try {
+			Expression root=new Expression("(2^1100+1)^(1/200)");
+			if(!root.toString().endsWith("("+BigInteger.ONE.shiftLeft(1100).add(BigInteger.ONE)+")")) {
+				System.out.println("(2^1100+1)^(1/200) read as: "+root);
+			}
+			root=new Expression("(2^1100)^(1/200)");
+			if(!root.toString().equals("32\u221a(2)")) {
+				System.out.println("(2^1100)^(1/200) read as: "+root);
+			}
+		}catch(Exception e) {
+			System.out.println("Taking the 200th root of 2^1100+1 produced:");
+			e.printStackTrace();
+		}
+		// A ParseCache counts hits, misses and evictions, treats Strings differing only in white space as the same, and
+		// gives out copies so changing one doesn't change the cache.
+		ParseCache cache=new ParseCache(2,1<<20);
+		Expression first=cache.parse("x+1");
+		first.setEquation(true);
+		Expression again=cache.parse(" x + 1 ");
+		if(again.isEquation()||again==first||!again.equals(new Expression("x+1"))) {
+			System.out.println("The ParseCache gave out x+1 as "+again+" after a copy of it was changed.");
+		}
+		cache.parse("x+2");
+		cache.parse("x+3");
+		if(cache.getHits()!=1||cache.getMisses()!=3||cache.getEvictions()!=1||cache.size()!=2) {
+			System.out.println("The ParseCache counted "+cache.getHits()+" hits, "+cache.getMisses()+" misses and "+
+					cache.getEvictions()+" evictions, holding "+cache.size()+".");
+		}
+		// A BulkParser gives back every line in order, with the lines it couldn't read as errors of their own, including
+		// ones nested too deeply.
+		ArrayList<BulkParser.Result> results=new ArrayList<>();
+		try(BulkParser bulk=new BulkParser(4,null)) {
+			StringBuilder lines=new StringBuilder();
+			for(int i=0;i<100;i++) {
+				lines.append(i==40?")(":i==70?nest(20000):i+"x").append('\n');
+			}
+			bulk.parse(new StringReader(lines.toString()),results::add);
+		}catch(IOException e) {
+			e.printStackTrace();
+		}
+		for(int i=0;i<results.size();i++) {
+			BulkParser.Result result=results.get(i);
+			boolean bad=i==40||i==70;
+			if(result.line!=i+1||result.isValid()==bad||bad&&!(result.error instanceof MathFormatException)||
+					!bad&&!result.expression.equals(new Expression(i+"x"))) {
+				System.out.println("The BulkParser gave line "+(i+1)+" as "+result);
+			}
+		}
+		if(results.size()!=100) {
+			System.out.println("The BulkParser gave "+results.size()+" of 100 lines.");
+		}
+		// Sums raised to powers are multiplied out before factoring unless the expansion policy leaves them factored,
+		// and the policy only lasts for the call it is given to.
+		String[] policyFactored={"[-4x^3y+x^3y^2+4x^3+3xy^2-12x^2y+3x^2y^2+12x^2+y^2-12xy+12x-4y+4]",
+				"[(x+1)^3, (y-2)^2]","[(x+1)^3, (y-2)^2]"};
+		String[] policySquared={"[x+1, x+1]","[x+1, x+1]","[(x+1)^2]"};
+		for(ExpansionPolicy policy:ExpansionPolicy.values()) {
+			String product=Expression.withExpansionPolicy(policy,5,()->new Expression("(x+1)^3(y-2)^2").factor()).toString();
+			String square=Expression.withExpansionPolicy(policy,5,()->new Expression("(x+1)^2").factor()).toString();
+			if(!product.equals(policyFactored[policy.ordinal()])||!square.equals(policySquared[policy.ordinal()])) {
+				System.out.println("Under "+policy+" (x+1)^3(y-2)^2 and (x+1)^2 factored as "+product+" and "+square);
+			}
+		}
+		if(!new Expression("(x+1)^2").toString().equals("x^2+2x+1")) {
+			System.out.println("(x+1)^2 read as "+new Expression("(x+1)^2")+" after an expansion policy was used.");
+		}
+		// Compiled Expressions evaluate the real and imaginary parts to the same values as substituting into the
+		// Expression.
+		try {
+			Expression complex=new Expression("3x^2y-2"+imag+"xy+(x+3)^(1/2)-5"+imag+"+x^-2");
+			double[][] points={{1,2},{-2,0.5},{1,-0.25}};
+			for(double[] point:points) {
+				HashMap<Character,Expression> values=new HashMap<>();
+				values.put('x',new Expression(Double.toString(point[0])));
+				values.put('y',new Expression(Double.toString(point[1])));
+				double real=complex.compile('x','y').applyAsDouble(point);
+				double imaginary=complex.compileImaginary('x','y').applyAsDouble(point);
+				Expression exact=complex.substitute(values);
+				if(!exact.equals(new Expression(Double.toString(real)).add(new Expression(imaginary+imag)))) {
+					System.out.println(complex+" at "+Arrays.toString(point)+" compiled to "+real+"+"+imaginary+"i but is "+
+							exact);
+				}
+			}
+			if(new Expression("x^3-2x").compile('x').applyAsDouble(2)!=4) {
+				System.out.println("x^3-2x at 2 compiled to "+new Expression("x^3-2x").compile('x').applyAsDouble(2));
+			}
+		}catch(NotEvaluatable e) {
+			e.printStackTrace();
+		}
+		// Substituting replaces a variable everywhere it is, including in roots, and replaces several at once.
+		Expression substituted=new Expression("x^2+xy+(x+1)^(1/2)").substitute('x',new Expression("y+1"));
+		if(!substituted.equals(new Expression("(y+1)^2+(y+1)y+(y+2)^(1/2)"))) {
+			System.out.println("Putting y+1 for x in x^2+xy+(x+1)^(1/2) made "+substituted);
+		}
+		HashMap<Character,Expression> swap=new HashMap<>();
+		swap.put('x',new Expression("y"));
+		swap.put('y',new Expression("x"));
+		substituted=new Expression("x^2+2y").substitute(swap);
+		if(!substituted.toString().equals("y^2+2x")) {
+			System.out.println("Swapping x and y in x^2+2y made "+substituted);
+		}
+		substituted=new Expression("x^2-5x+6=0").substitute('x',new Expression("3"));
+		if(!substituted.equals(new Expression("0=0"))) {
+			System.out.println("Putting 3 for x in x^2-5x+6=0 made "+substituted);
+		}
+		// Evaluating over arrays of points gives the same values as the compiled Expression, across whole and partial
+		// blocks, when writing over the points, and for Expressions that aren't polynomials.
+		try {
+			String[] evaluated={"2x^3-x+5","x^20-3x^7+1","(x+10)^(1/2)+x"};
+			for(String current:evaluated) {
+				Expression polynomial=new Expression(current);
+				for(int length:new int[]{0,1,512,513,1100}) {
+					double[] xs=new double[length];
+					for(int i=0;i<length;i++) {
+						xs[i]=(i-length/2)/64.;
+					}
+					double[] out=new double[length];
+					polynomial.evaluate('x',xs,out);
+					polynomial.evaluate('x',xs,xs);
+					for(int i=0;i<length;i++) {
+						double expected=polynomial.compile('x').applyAsDouble((i-length/2)/64.);
+						if(Math.abs(out[i]-expected)>1e-9*Math.max(1,Math.abs(expected))||xs[i]!=out[i]) {
+							System.out.println(current+" at "+(i-length/2)/64.+" of "+length+" points evaluated to "+out[i]+
+									" and "+xs[i]+" rather than "+expected);
+							break;
+						}
+					}
+				}
+			}
+		}catch(NotEvaluatable e) {
+			e.printStackTrace();
+		}
+		// ax^2+bx+c=0 is solved once, then its solution is evaluated and substituted into for each a, b and c.
+		try {
+			Solution family=new Expression("ax^2+bx+c=0").solveFor('x');
+			char[] params={'a','b','c'};
+			double[][] roots=family.evaluate(params,new double[][]{{1,-3,2},{1,0,1},{2,0,-8}});
+			for(double[] root:roots) {
+				Arrays.sort(root);
+			}
+			if(family.compile(params).size()!=2||!Arrays.deepToString(roots).equals("[[1.0, 2.0], [NaN, NaN], [-2.0, 2.0]]")) {
+				System.out.println("ax^2+bx+c=0 evaluated to "+Arrays.deepToString(roots));
+			}
+			HashMap<Character,Expression> coefficients=new HashMap<>();
+			coefficients.put('a',new Expression("1"));
+			coefficients.put('b',new Expression("-3"));
+			coefficients.put('c',new Expression("2"));
+			Solution solved=family.substitute(coefficients);
+			if(!solved.value.equals(new HashSet<>(Arrays.asList(new Expression("1"),new Expression("2"))))) {
+				System.out.println("ax^2+bx+c=0 with x^2-3x+2 substituted solved as "+solved);
+			}
+		}catch(NotAbleToSolve|NotEvaluatable e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param depth The number of parentheses.
+	 * @return x inside depth nested parentheses.
+	 */
+	static String nest(int depth)
+	{
+		StringBuilder nested=new StringBuilder();
+		for(int i=0;i<depth;i++) {
+			nested.append('(');
+		}
+		nested.append('x');
+		for(int i=0;i<depth;i++) {
+			nested.append(')');
+		}
+		return nested.toString();
 	}
 }
@@ -0,0 +1,316 @@
+package lang;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Reads many Expressions, one per line, from a Reader or a file. Lines are handed out in batches to a pool of threads
+ * to be parsed, and the results are given back in the same order as the lines. Blank lines are skipped, but still
+ * counted in the line numbers. Close this when done to stop its threads.
+ *
+ * @author Luke Senseney
+ */
+public class BulkParser implements AutoCloseable {
+	/**
+	 * Number of lines given to a thread at once.
+	 */
+	private static final int BATCH_SIZE = 256;
+	/**
+	 * Most bytes of a file mapped into memory at once.
+	 */
+	private static final int MAX_REGION = 1 << 30;
+	/**
+	 * The threads that parse the lines.
+	 */
+	private final ExecutorService workers;
+	/**
+	 * The most batches waiting to be parsed or given back at once, to bound memory use.
+	 */
+	private final int maxInFlight;
+	/**
+	 * Cache to parse lines with, or null to parse each line itself.
+	 */
+	private final ParseCache cache;
+
+	/**
+	 * Creates a new BulkParser with a thread for each processor.
+	 */
+	public BulkParser() {
+		this(Runtime.getRuntime().availableProcessors(), null);
+	}
+
+	/**
+	 * Creates a new BulkParser.
+	 * @param threads The number of threads to parse with.
+	 * @param cache A cache to parse lines with, or null to not cache them.
+	 * @throws IllegalArgumentException If threads isn't positive.
+	 */
+	public BulkParser(int threads, ParseCache cache) {
+		if(threads <= 0) {
+			throw new IllegalArgumentException("There must be at least one thread to parse with.");
+		}
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "BulkParser");
+			t.setDaemon(true);
+			return t;
+		});
+		maxInFlight = threads * 4;
+		this.cache = cache;
+	}
+
+	/**
+	 * Parses each line read from in, giving the results to out in order. out is only called from the calling thread.
+	 * @param in Where to read the lines from. Not closed by this.
+	 * @param out Where to give the result of each line.
+	 * @throws IOException If in could not be read.
+	 */
+	public void parse(Reader in, Consumer<Result> out) throws IOException {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in);
+		Batches batches = new Batches(out);
+		String line;
+		while((line = reader.readLine()) != null) {
+			batches.add(line);
+		}
+		batches.finish();
+	}
+
+	/**
+	 * Parses each line of a UTF-8 file, giving the results to out in order. The file is mapped into memory rather than
+	 * read into a buffer, and only each line is copied out of it. out is only called from the calling thread.
+	 * @param file The file to read.
+	 * @param out Where to give the result of each line.
+	 * @throws IOException If file could not be read, or has a line longer than a gigabyte.
+	 */
+	public void parse(Path file, Consumer<Result> out) throws IOException {
+		Batches batches = new Batches(out);
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			// Maps the file a region at a time. Each region starts at the beginning of a line, and ends at the end of
+			// the file or its last full line.
+			while(position < size) {
+				long length = Math.min(size - position, MAX_REGION);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean last = position + length == size;
+				int start = 0;
+				for(int i = 0; i < length; i++) {
+					if(region.get(i) == '\n') {
+						batches.add(decode(region, start, i));
+						start = i + 1;
+					}
+				}
+				if(last) {
+					if(start < length) {
+						batches.add(decode(region, start, (int)length));
+					}
+				} else if(start == 0) {
+					throw new IOException("Line starting at byte " + position + " of " + file + " is too long.");
+				}
+				position += last ? length : start;
+			}
+		}
+		batches.finish();
+	}
+
+	/**
+	 * Stops the threads of this. Any parse already running will fail.
+	 */
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Decodes a line of UTF-8 from part of a buffer, dropping a \r at the end.
+	 * @param buffer The buffer to decode from.
+	 * @param start The index of the first byte of the line.
+	 * @param end The index after the last byte of the line.
+	 * @return The line.
+	 */
+	private static String decode(MappedByteBuffer buffer, int start, int end) {
+		if(end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		byte[] bytes = new byte[end - start];
+		ByteBuffer line = buffer.duplicate();
+		line.position(start);
+		line.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses a batch of lines.
+	 * @param lines The lines to parse.
+	 * @param firstLine The line number of the first line.
+	 * @return The result of each line that wasn't blank, in order.
+	 */
+	private List<Result> parseBatch(List<String> lines, long firstLine) {
+		ArrayList<Result> results = new ArrayList<>(lines.size());
+		for(int i = 0; i < lines.size(); i++) {
+			String text = lines.get(i);
+			if(text.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				Expression parsed = cache == null ? new Expression(text) : cache.parse(text);
+				results.add(new Result(firstLine + i, text, parsed, null));
+			} catch(RuntimeException e) {
+				results.add(new Result(firstLine + i, text, null, e));
+			} catch(StackOverflowError e) {
+				// Only this line is too deeply nested to read, so only it fails rather than the whole batch.
+				results.add(new Result(firstLine + i, text, null,
+						new MathFormatException("Line " + (firstLine + i) + " is nested too deeply to read.", e)));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Collects lines into batches, hands them to the workers and gives back their results in order.
+	 */
+	private class Batches {
+		/**
+		 * Where to give the results.
+		 */
+		private final Consumer<Result> out;
+		/**
+		 * Batches being parsed, in order.
+		 */
+		private final ArrayDeque<Future<List<Result>>> inFlight = new ArrayDeque<>();
+		/**
+		 * The batch being collected.
+		 */
+		private ArrayList<String> batch = new ArrayList<>(BATCH_SIZE);
+		/**
+		 * The line number of the first line in batch.
+		 */
+		private long firstLine = 1;
+
+		/**
+		 * @param out Where to give the results.
+		 */
+		Batches(Consumer<Result> out) {
+			this.out = out;
+		}
+
+		/**
+		 * Adds the next line, handing out the batch if it is full.
+		 * @param line The next line.
+		 */
+		void add(String line) {
+			batch.add(line);
+			if(batch.size() == BATCH_SIZE) {
+				submit();
+			}
+		}
+
+		/**
+		 * Hands out what is left and waits for all the results to be given back.
+		 */
+		void finish() {
+			if(!batch.isEmpty()) {
+				submit();
+			}
+			while(!inFlight.isEmpty()) {
+				emit();
+			}
+		}
+
+		/**
+		 * Hands the current batch to the workers, first waiting for the oldest batch if too many are in flight.
+		 */
+		private void submit() {
+			if(inFlight.size() >= maxInFlight) {
+				emit();
+			}
+			List<String> lines = batch;
+			long first = firstLine;
+			inFlight.add(workers.submit(() -> parseBatch(lines, first)));
+			firstLine += lines.size();
+			batch = new ArrayList<>(BATCH_SIZE);
+		}
+
+		/**
+		 * Waits for the oldest batch and gives its results to out.
+		 */
+		private void emit() {
+			try {
+				inFlight.remove().get().forEach(out);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while parsing.", e);
+			} catch(ExecutionException e) {
+				throw new IllegalStateException("A batch of lines could not be parsed.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * The result of parsing one line, either the Expression read or the error produced reading it.
+	 *
+	 * @author Luke Senseney
+	 */
+	public static final class Result {
+		/**
+		 * The number of the line, starting from 1.
+		 */
+		public final long line;
+		/**
+		 * The text of the line.
+		 */
+		public final String text;
+		/**
+		 * The Expression read, or null if there was an error.
+		 */
+		public final Expression expression;
+		/**
+		 * The error produced reading the line, or null if it was read.
+		 */
+		public final RuntimeException error;
+
+		/**
+		 * Creates a new Result.
+		 * @param line The number of the line.
+		 * @param text The text of the line.
+		 * @param expression The Expression read, or null if there was an error.
+		 * @param error The error produced, or null if there wasn't one.
+		 */
+		Result(long line, String text, Expression expression, RuntimeException error) {
+			this.line = line;
+			this.text = text;
+			this.expression = expression;
+			this.error = error;
+		}
+
+		/**
+		 * @return If the line was read without error.
+		 */
+		public boolean isValid() {
+			return error == null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return line + ": " + (error == null ? expression : error.getMessage());
+		}
+	}
+}
@@ -1,50 +1,114 @@
 package lang;
-import java.util.NavigableMap;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 
 /**
  * Class to maintain exact accuracy when using repeating decimals, non-integer, or constants, by holding a numerator,
- * denominator, and array of Roots.
+ * denominator, and array of Roots. Constants can't be changed once made, so they may be shared freely, and common
+ * small values are shared through {@link #valueOf(long)} and the results of arithmetic.
  *
  * @author Luke Senseney
  */
-public class Constant extends Number implements Comparable<Number>, Serializable {
-	private static final long serialVersionUID = 1L;
+public final class Constant extends Number implements Comparable<Number>, Serializable {
+	private static final long serialVersionUID = 2L;
+	/**
+	 * The numerator of this number, if it and the denominator both fit in a long. Otherwise bigNumerator is used.
+	 */
+	private long numerator = 0;
+	/**
+	 * The denominator of this number, if it and the numerator both fit in a long. Otherwise bigDenominator is used.
+	 */
+	private long denominator = 1;
+	/**
+	 * The numerator of this number if it or the denominator doesn't fit in a long, else null.
+	 */
+	private BigInteger bigNumerator = null;
+	/**
+	 * The denominator of this number if it or the numerator doesn't fit in a long, else null.
+	 */
+	private BigInteger bigDenominator = null;
+	/**
+	 * The roots of a Constant without any, shared so that rational Constants don't each need a Map.
+	 */
+	private static final NavigableMap<Integer, Constant> NO_ROOTS = Collections.emptyNavigableMap();
+	/**
+	 * A Map of roots in this constant. Square root of 5 would be (1/2) mapped to 5. The Map is never changed once this
+	 * is made, so Constants made from this may share it. NO_ROOTS if there are none.
+	 */
+	private NavigableMap<Integer, Constant> roots = NO_ROOTS;
 	/**
-	 * The numerator of this number.
+	 * The smallest integer kept in INTEGERS.
 	 */
-	private BigInteger numerator = BigInteger.ZERO;
+	private static final int MIN_CACHED = -128;
 	/**
-	 * The denominator of this number.
+	 * The shared Constants for the integers from MIN_CACHED to 127.
 	 */
-	private BigInteger denominator = BigInteger.ONE;
+	private static final Constant[] INTEGERS = new Constant[256];
 	/**
-	 * A Map of roots in this constant. Square root of 5 would be (1/2) mapped to 5.
+	 * The largest denominator kept in UNIT_FRACTIONS.
 	 */
-	private TreeMap<Integer, Constant> roots = new TreeMap<>();
+	private static final int MAX_CACHED_DENOMINATOR = 16;
+	/**
+	 * The shared Constants for 1/d and -1/d, at 2*d and 2*d+1, for d from 2 to MAX_CACHED_DENOMINATOR.
+	 */
+	private static final Constant[] UNIT_FRACTIONS = new Constant[2 * MAX_CACHED_DENOMINATOR + 2];
+	static {
+		for(int i = 0; i < INTEGERS.length; i++) {
+			INTEGERS[i] = new Constant(i + MIN_CACHED);
+		}
+		for(int d = 2; d <= MAX_CACHED_DENOMINATOR; d++) {
+			UNIT_FRACTIONS[2 * d] = new Constant(1, d);
+			UNIT_FRACTIONS[2 * d + 1] = new Constant(-1, d);
+		}
+	}
+	/**
+	 * Constant with a value of 0.
+	 */
+	public static final Constant ZERO = valueOf(0);
 	/**
 	 * Constant with a value of 1.
 	 */
-	public static final Constant ONE = new Constant(1);
+	public static final Constant ONE = valueOf(1);
 	/**
 	 * Constant with a value of -1.
 	 */
-	public static final Constant NEGATE = new Constant(-1);
+	public static final Constant NEGATE = valueOf(-1);
+	/**
+	 * The powers of ten that fit in a long, by exponent.
+	 */
+	private static final long[] POWERS_OF_TEN = new long[19];
+	/**
+	 * The largest power of ten allowed in a number written with an exponent, such as 1e5.
+	 */
+	private static final int MAX_EXPONENT = 100000;
+	/**
+	 * The most bits compareTo will raise two Constants with roots to before comparing them as doubles instead.
+	 */
+	private static final long MAX_COMPARE_BITS = 1 << 16;
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
 
 	/**
 	 * Creates a new Constant from an long.
 	 * @param numerator The long to make a Constant.
 	 */
 	public Constant(long numerator) {
-		this.numerator = BigInteger.valueOf(numerator);
+		setFraction(numerator, 1);
 	}
 
 	/**
@@ -53,8 +117,7 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @param denominator The new denominator.
 	 */
 	public Constant(long numerator, long denominator) {
-		this.numerator = BigInteger.valueOf(numerator);
-		this.denominator = BigInteger.valueOf(denominator);
+		setFraction(numerator, denominator);
 		simplify();
 	}
 
@@ -64,12 +127,11 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 */
 	public Constant(double newConstant) {
 		if(newConstant % 1 != 0) {
-			String s = String.valueOf(newConstant);
-			int i = s.indexOf('.');
-			numerator = new BigInteger(s.substring(0, i) + s.substring(i + 1));
-			denominator = BigInteger.TEN.pow(s.length() - i - 1);
+			// BigDecimal.valueOf uses the same digits as String.valueOf, but also reads ones such as 1.0E-5.
+			BigDecimal decimal = BigDecimal.valueOf(newConstant);
+			setFraction(decimal.unscaledValue(), BigInteger.TEN.pow(decimal.scale()));
 		} else {
-			numerator = BigInteger.valueOf((long)newConstant);
+			setFraction((long)newConstant, 1);
 		}
 		simplify();
 	}
@@ -81,9 +143,8 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @param roots The roots.
 	 */
 	public Constant(long numerator, long denominator, TreeMap<Integer, Constant> roots) {
-		this.numerator = BigInteger.valueOf(numerator);
-		this.denominator = BigInteger.valueOf(denominator);
-		this.roots = roots;
+		setFraction(numerator, denominator);
+		this.roots = roots.isEmpty() ? NO_ROOTS : new TreeMap<>(roots);
 		simplify();
 	}
 
@@ -99,8 +160,8 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @param  denominator The denominator of the Constant.
 	 */
 	public Constant(BigInteger numerator, BigInteger denominator) {
-		this.numerator = numerator;
-		this.denominator = denominator;
+		setFraction(numerator, denominator);
+		reduce();
 	}
 
 	/**
@@ -110,9 +171,82 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @param  roots       The roots of this Constant.
 	 */
 	public Constant(BigInteger numerator, BigInteger denominator, TreeMap<Integer, Constant> roots) {
-		this.numerator = numerator;
-		this.denominator = denominator;
-		this.roots = roots;
+		setFraction(numerator, denominator);
+		this.roots = roots.isEmpty() ? NO_ROOTS : new TreeMap<>(roots);
+		reduce();
+	}
+
+	/**
+	 * Gets a Constant equal to an integer, sharing one already made if it is small.
+	 * @param value The integer.
+	 * @return A Constant equal to value.
+	 */
+	public static Constant valueOf(long value) {
+		if(value >= MIN_CACHED && value < MIN_CACHED + INTEGERS.length) {
+			return INTEGERS[(int)value - MIN_CACHED];
+		}
+		return new Constant(value);
+	}
+
+	/**
+	 * Gets a Constant equal to a fraction, sharing one already made if it is a common one.
+	 * @param numerator The numerator.
+	 * @param denominator The denominator.
+	 * @return A Constant equal to numerator/denominator.
+	 */
+	public static Constant valueOf(long numerator, long denominator) {
+		if(numerator != Long.MIN_VALUE && denominator != Long.MIN_VALUE && denominator != 0) {
+			if(denominator < 0) {
+				numerator = -numerator;
+				denominator = -denominator;
+			}
+			long divide = gcd(Math.abs(numerator), denominator);
+			Constant cached = cached(numerator / divide, denominator / divide);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		return new Constant(numerator, denominator);
+	}
+
+	/**
+	 * Gets the shared Constant for a reduced fraction, if there is one.
+	 * @param numerator The numerator.
+	 * @param denominator The denominator, which is positive.
+	 * @return The shared Constant equal to numerator/denominator, or null if there isn't one.
+	 */
+	private static Constant cached(long numerator, long denominator) {
+		if(denominator == 1) {
+			if(numerator >= MIN_CACHED && numerator < MIN_CACHED + INTEGERS.length) {
+				return INTEGERS[(int)numerator - MIN_CACHED];
+			}
+		} else if(denominator <= MAX_CACHED_DENOMINATOR && (numerator == 1 || numerator == -1)) {
+			return UNIT_FRACTIONS[(int)(2 * denominator + (numerator < 0 ? 1 : 0))];
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the shared Constant equal to this, if there is one. Used on the results of arithmetic, so that common
+	 * values don't each keep their own Constant.
+	 * @return The shared Constant equal to this, or this.
+	 */
+	private Constant share() {
+		if(bigNumerator == null && roots.isEmpty()) {
+			Constant cached = cached(numerator, denominator);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Makes sure a deserialized Constant that equals a shared one is replaced by it.
+	 * @return The shared Constant equal to this, or this.
+	 */
+	private Object readResolve() {
+		return share();
 	}
 
 	/**
@@ -120,7 +254,7 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return The numerator of this constant.
 	 */
 	public BigInteger getNumerator() {
-	    return numerator;
+	    return bigNumerator == null ? BigInteger.valueOf(numerator) : bigNumerator;
 	}
 
 	/**
@@ -128,7 +262,7 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return The denominator of this Constant.
 	 */
 	public BigInteger getDenominator() {
-	    return denominator;
+	    return bigDenominator == null ? BigInteger.valueOf(denominator) : bigDenominator;
 	}
 
 	/**
@@ -140,30 +274,161 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	}
 
 	/**
-	 * Setter for the numerator of this Constant.
-	 * @param numerator The new numerator of this Constant.
+	 * Sets the fraction of this, keeping it in longs if both fit. Does not reduce it. Only used on Constants that are
+	 * still being made.
+	 * @param numerator The new numerator.
+	 * @param denominator The new denominator.
 	 */
-	public void setNumerator(BigInteger numerator) {
-	    this.numerator = numerator;
-	    simplify();
+	private void setFraction(long numerator, long denominator) {
+		// Long.MIN_VALUE is kept as a BigInteger so that negating or taking the absolute value of a long never overflows.
+		if(numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+			setFraction(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+		} else {
+			this.numerator = numerator;
+			this.denominator = denominator;
+			bigNumerator = null;
+			bigDenominator = null;
+		}
 	}
 
 	/**
-	 * Setter for the denominator of this Constant.
-	 * @param denominator The new denominator of this Constant.
+	 * Sets the fraction of this, keeping it in longs if both fit. Does not reduce it.
+	 * @param numerator The new numerator.
+	 * @param denominator The new denominator.
 	 */
-	public void setDenominator(BigInteger denominator) {
-	    this.denominator = denominator;
-	    simplify();
+	private void setFraction(BigInteger numerator, BigInteger denominator) {
+		if(fitsLong(numerator) && fitsLong(denominator)) {
+			this.numerator = numerator.longValue();
+			this.denominator = denominator.longValue();
+			bigNumerator = null;
+			bigDenominator = null;
+		} else {
+			bigNumerator = numerator;
+			bigDenominator = denominator;
+		}
 	}
 
 	/**
-	 * Setter for the roots of this Constant.
-	 * @param roots The new roots of this Constant.
+	 * @param a A BigInteger.
+	 * @return If a fits in a long and isn't Long.MIN_VALUE.
 	 */
-	public void setRoots(TreeMap<Integer, Constant> roots) {
-	    this.roots = roots;
-	    simplify();
+	private static boolean fitsLong(BigInteger a) {
+		return a.bitLength() < 64 && a.longValue() != Long.MIN_VALUE;
+	}
+
+	/**
+	 * Gets the greatest common divisor of two longs.
+	 * @param a A long that isn't negative.
+	 * @param b A long that isn't negative.
+	 * @return The gcd of a and b.
+	 */
+	private static long gcd(long a, long b) {
+		while(b != 0) {
+			long temp = b;
+			b = a % b;
+			a = temp;
+		}
+		return a;
+	}
+
+	/**
+	 * Multiplies the fraction of this by the fraction of a, ignoring roots. Does not reduce it.
+	 * @param a The Constant to multiply by.
+	 */
+	private void multiplyFraction(Constant a) {
+		if(bigNumerator == null && a.bigNumerator == null) {
+			try {
+				// Cancels common factors first so that the products are less likely to overflow.
+				long cancelA = gcd(Math.abs(numerator), a.denominator);
+				long cancelB = gcd(Math.abs(a.numerator), denominator);
+				setFraction(Math.multiplyExact(numerator / cancelA, a.numerator / cancelB),
+						Math.multiplyExact(denominator / cancelB, a.denominator / cancelA));
+				return;
+			} catch(ArithmeticException e) {
+				// Overflowed, or there was a zero denominator, so falls back to BigInteger.
+			}
+		}
+		setFraction(getNumerator().multiply(a.getNumerator()), getDenominator().multiply(a.getDenominator()));
+	}
+
+	/**
+	 * Raises the fraction of this to a power, ignoring roots.
+	 * @param power The power, which can't be negative.
+	 */
+	private void raiseFraction(int power) {
+		if(bigNumerator == null) {
+			try {
+				setFraction(pow(numerator, power), pow(denominator, power));
+				return;
+			} catch(ArithmeticException e) {
+				// Overflowed, so falls back to BigInteger.
+			}
+		}
+		setFraction(getNumerator().pow(power), getDenominator().pow(power));
+	}
+
+	/**
+	 * Raises a long to a power by squaring.
+	 * @param base The base.
+	 * @param power The power, which can't be negative.
+	 * @return base^power
+	 * @throws ArithmeticException If the answer doesn't fit in a long.
+	 */
+	private static long pow(long base, int power) throws ArithmeticException {
+		long ans = 1;
+		while(power > 0) {
+			if((power & 1) == 1) {
+				ans = Math.multiplyExact(ans, base);
+			}
+			power >>= 1;
+			if(power > 0) {
+				base = Math.multiplyExact(base, base);
+			}
+		}
+		return ans;
+	}
+
+	/**
+	 * Keeps the denominator positive, and reduces the fraction. A Constant of zero has no roots.
+	 */
+	private void reduce() {
+		if(bigNumerator == null) {
+			if(denominator < 0) {
+				numerator = -numerator;
+				denominator = -denominator;
+			}
+			long divide = gcd(Math.abs(numerator), denominator);
+			if(divide > 1) {
+				numerator /= divide;
+				denominator /= divide;
+			}
+			if(numerator == 0 && denominator != 0) {
+				denominator = 1;
+			}
+		} else {
+			BigInteger num = bigNumerator;
+			BigInteger den = bigDenominator;
+			if(den.signum() < 0) {
+				num = num.negate();
+				den = den.negate();
+			}
+			BigInteger divide = num.gcd(den);
+			if(divide.signum() != 0) {
+				num = num.divide(divide);
+				den = den.divide(divide);
+			}
+			setFraction(num, den);
+		}
+		if(isZero() && !roots.isEmpty()) {
+			roots = NO_ROOTS;
+		}
+	}
+
+	/**
+	 * @return If this is equal to zero.
+	 */
+	private boolean isZero() {
+		return bigNumerator == null ? numerator == 0 : bigNumerator.signum() == 0;
 	}
 
 	/*
@@ -177,7 +442,10 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 		for(Entry<Integer, Constant> root : roots.entrySet()) {
 			sum *= Math.pow(root.getValue().doubleValue(), 1. / root.getKey());
 		}
-		return sum * numerator.doubleValue() / denominator.doubleValue();
+		if(bigNumerator == null) {
+			return sum * numerator / denominator;
+		}
+		return sum * bigNumerator.doubleValue() / bigDenominator.doubleValue();
 	}
 
 	/*
@@ -211,74 +479,154 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	}
 
 	/**
-	 * Adds a root to this Constant.
-	 * @param root The root to be added
-	 * @param in The constant to be in the root
+	 * Simplify the fractions and the radicals. Only used on Constants that are still being made.
 	 */
-	public void addRoot(Integer root, Constant in) {
-		roots.merge(root, in, Constant::add);
-        simplify();
+	private void simplify() {
+		simplify(Collections.emptySet());
 	}
 
 	/**
-	 * Simplify the fractions and the radicals.
+	 * Multiplies more roots into this, then simplifies the fractions and the radicals. Only used on Constants that are
+	 * still being made.
+	 * @param more The roots to multiply into this.
 	 */
-	public void simplify() {
+	private void simplify(Collection<Entry<Integer, Constant>> more) {
+		if(roots.isEmpty() && more.isEmpty()) {
+			reduce();
+			return;
+		}
+		// Works on a copy of the roots, since the Map and the Constants in it may be shared.
+		if(!roots.isEmpty()) {
+			roots = new TreeMap<>(roots);
+		}
 		// Removes all roots from inside each root, and adds them to the proper root. i.e. takes (2^(1/2))^(1/2)
 		// and turns it to 2^(1/4)
 		ArrayList<Entry<Integer, Constant>> toAdd = new ArrayList<>();
 		for(Entry<Integer, Constant> current : roots.entrySet()) {
-			for(Entry<Integer, Constant> root : current.getValue().roots.entrySet()) {
-				toAdd.add(new SimpleEntry<>(current.getKey() * root.getKey(), root.getValue()));
+			if(!current.getValue().roots.isEmpty()) {
+				for(Entry<Integer, Constant> root : current.getValue().roots.entrySet()) {
+					toAdd.add(new SimpleEntry<>(current.getKey() * root.getKey(), root.getValue()));
+				}
+				current.setValue(current.getValue().withoutRoots());
 			}
-			current.getValue().roots = new TreeMap<>();
+		}
+		for(Entry<Integer, Constant> current : more) {
+			toAdd.add(new SimpleEntry<>(current));
 		}
 		for(int i = 0; i < toAdd.size(); i++) {
 			Entry<Integer, Constant> current = toAdd.get(i);
-			for(Entry<Integer, Constant> root : current.getValue().roots.entrySet()) {
-				toAdd.add(new SimpleEntry<>(current.getKey() * root.getKey(), root.getValue()));
+			if(!current.getValue().roots.isEmpty()) {
+				for(Entry<Integer, Constant> root : current.getValue().roots.entrySet()) {
+					toAdd.add(new SimpleEntry<>(current.getKey() * root.getKey(), root.getValue()));
+				}
+				current.setValue(current.getValue().withoutRoots());
 			}
-			current.getValue().roots = new TreeMap<>();
 		}
-		for(Entry<Integer, Constant> current : toAdd) {
-			addRoot(current.getKey(), current.getValue());
+		// Pulls whole powers out of the roots. For instance takes the square root of 12 and turns it into 2 root 3.
+		// What is pulled out is kept in out and multiplied in at the end.
+		BigInteger[] out = {BigInteger.ONE, BigInteger.ONE};
+		TreeMap<Integer, Constant> simplified = new TreeMap<>();
+		ArrayDeque<Entry<Integer, Constant>> toSimplify = new ArrayDeque<>(roots.entrySet());
+		toSimplify.addAll(toAdd);
+		while(!toSimplify.isEmpty()) {
+			Entry<Integer, Constant> current = toSimplify.pop();
+			Entry<Integer, BigInteger> root = simplifyRoot(current.getKey(), current.getValue(), out);
+			if(root == null) {
+				continue;
+			}
+			// If a root of the same index is already there, multiplies them together and simplifies that again.
+			Constant other = simplified.remove(root.getKey());
+			if(other == null) {
+				simplified.put(root.getKey(), new Constant(root.getValue(), BigInteger.ONE));
+			} else if(other.signum() < 0 && root.getValue().signum() < 0) {
+				// The root of -a times the root of -b is the root of ab times (-1)^(2/index), not the root of ab.
+				toSimplify.push(new SimpleEntry<>(root.getKey(), other.multiply(new Constant(root.getValue(),
+						BigInteger.ONE))));
+				toSimplify.push(new SimpleEntry<>(root.getKey() / 2, NEGATE));
+			} else {
+				toSimplify.push(new SimpleEntry<>(root.getKey(), other.multiply(new Constant(root.getValue(),
+						BigInteger.ONE))));
+			}
 		}
-		// Sees if anything can be pulled out of the roots. For instance takes the square root of 12 and turns it into
-		// 2 root 3. Then rationalizes the denominator of the root.
-		for(Entry<Integer, Constant> current : roots.entrySet()) {
-			// Finds what can be extracted from the current root.
-			Constant extract = extract(current.getKey(), current.getValue());
-			// Takes it out from inside the root.
-			if(!extract.equals(ONE)) {
-				current.setValue(current.getValue().divide(extract));
-			}
-			// Changes extract to what must be multiplied to the coeff.
-			extract.numerator = BigInteger.valueOf((long)Math.pow(extract.numerator.doubleValue(), 1.
-					/ current.getKey().doubleValue()));
-			extract.denominator = BigInteger.valueOf((long)Math.pow(extract.denominator.doubleValue(), 1.
-					/ current.getKey().doubleValue()));
-			current.getValue().numerator = current.getValue().numerator.multiply(current.getValue().denominator);
-			denominator = denominator.multiply(current.getValue().denominator);
-			current.getValue().denominator = BigInteger.ONE;
-			if(!extract.equals(ONE)) {
-				Constant toBe = multiply(extract);
-				numerator = toBe.numerator;
-				denominator = toBe.denominator;
-				roots = toBe.roots;
-			}
-		}
-		Collection<Constant> value = roots.values();
-		// Removes all roots with a value of one.
-		value.removeIf(ONE::equals);
-		// Keeps the denominator positive.
-		if(denominator.compareTo(BigInteger.ZERO) < 0) {
-			numerator = numerator.negate();
-			denominator = denominator.negate();
-		}
-		// Reduces the fraction. Does not call .divide(Constant) to avoid recursion
-		BigInteger divide = numerator.gcd(denominator);
-		numerator = numerator.divide(divide);
-		denominator = denominator.divide(divide);
+		roots = simplified.isEmpty() ? NO_ROOTS : simplified;
+		if(!out[0].equals(BigInteger.ONE) || !out[1].equals(BigInteger.ONE)) {
+			setFraction(getNumerator().multiply(out[0]), getDenominator().multiply(out[1]));
+		}
+		// Keeps the denominator positive and reduces the fraction. Does not call .divide(Constant) to avoid recursion
+		reduce();
+	}
+
+	/**
+	 * Simplifies a single root. Rationalizes it, pulls every whole power out of it, and lowers its index if everything
+	 * left in it is a power. i.e. the 4th root of 1/8 becomes 1/2 times the 4th root of 2, and the 6th root of 9 becomes
+	 * the cube root of 3.
+	 * @param index The index of the root.
+	 * @param in What is in the root, which has no roots itself.
+	 * @param out The numerator and denominator of what has been pulled out of roots so far, which are multiplied by what
+	 * is pulled out of this one.
+	 * @return The index and what is left in the root, or null if nothing is.
+	 */
+	private static Entry<Integer, BigInteger> simplifyRoot(int index, Constant in, BigInteger[] out) {
+		if(index == 1) {
+			out[0] = out[0].multiply(in.getNumerator());
+			out[1] = out[1].multiply(in.getDenominator());
+			return null;
+		}
+		// The index-th root of p/q is the index-th root of p*q^(index-1), over q.
+		BigInteger den = in.getDenominator();
+		BigInteger radicand = in.getNumerator().multiply(den.pow(index - 1));
+		out[1] = out[1].multiply(den);
+		if(radicand.signum() == 0) {
+			out[0] = BigInteger.ZERO;
+			return null;
+		}
+		boolean negative = radicand.signum() < 0;
+		// Odd roots of negative numbers are negative, so the sign is pulled out.
+		if(negative && index % 2 == 1) {
+			out[0] = out[0].negate();
+			negative = false;
+		}
+		// The factors left in the root, and the gcd of their powers and the index.
+		TreeMap<BigInteger, Integer> left = new TreeMap<>();
+		int common = negative ? 1 : index;
+		for(Entry<BigInteger, Integer> factor : Factorizer.factor(radicand.abs()).entrySet()) {
+			int power = factor.getValue();
+			if(power >= index) {
+				out[0] = out[0].multiply(factor.getKey().pow(power / index));
+				power %= index;
+			}
+			if(power > 0) {
+				left.put(factor.getKey(), power);
+				common = gcd(common, power);
+			}
+		}
+		if(left.isEmpty() && !negative) {
+			return null;
+		}
+		BigInteger inside = negative ? BigInteger.ONE.negate() : BigInteger.ONE;
+		for(Entry<BigInteger, Integer> factor : left.entrySet()) {
+			inside = inside.multiply(factor.getKey().pow(factor.getValue() / common));
+		}
+		return new SimpleEntry<>(index / common, inside);
+	}
+
+	/**
+	 * Gets the greatest common divisor of two ints.
+	 * @param a An int that isn't negative.
+	 * @param b An int that isn't negative.
+	 * @return The gcd of a and b.
+	 */
+	private static int gcd(int a, int b) {
+		return (int)gcd((long)a, (long)b);
+	}
+
+	/**
+	 * @return The fraction of this, without its roots.
+	 */
+	private Constant withoutRoots() {
+		Constant c = copy();
+		c.roots = NO_ROOTS;
+		return c.share();
 	}
 
 	/**
@@ -287,14 +635,21 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return this*a
 	 */
 	public Constant multiply(Constant a) {
-		Constant c = clone();
-		c.numerator = c.numerator.multiply(a.numerator);
-		c.denominator = c.denominator.multiply(a.denominator);
-		for(Entry<Integer, Constant> current : a.roots.entrySet()) {
-			c.addRoot(current.getKey(), current.getValue());
+		if(roots.isEmpty() && a.roots.isEmpty() && bigNumerator == null && a.bigNumerator == null) {
+			try {
+				// Cancels common factors first so that the products are less likely to overflow.
+				long cancelA = gcd(Math.abs(numerator), a.denominator);
+				long cancelB = gcd(Math.abs(a.numerator), denominator);
+				return valueOf(Math.multiplyExact(numerator / cancelA, a.numerator / cancelB),
+						Math.multiplyExact(denominator / cancelB, a.denominator / cancelA));
+			} catch(ArithmeticException e) {
+				// Overflowed, or there was a zero denominator, so falls back to the general case.
+			}
 		}
-		c.simplify();
-		return c;
+		Constant c = copy();
+		c.multiplyFraction(a);
+		c.simplify(a.roots.entrySet());
+		return c.share();
 	}
 
 	/**
@@ -303,10 +658,10 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return this*a
 	 */
 	public Constant multiply(long a) {
-		Constant c = clone();
-		c.numerator = c.numerator.multiply(BigInteger.valueOf(a));
-		c.simplify();
-		return c;
+		Constant c = copy();
+		c.multiplyFraction(valueOf(a));
+		c.reduce();
+		return c.share();
 	}
 
 	/**
@@ -324,10 +679,10 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return this/a
 	 */
 	public Constant divide(long a) {
-		Constant c = clone();
-		c.denominator = c.denominator.multiply(BigInteger.valueOf(a));
-		c.simplify();
-		return c;
+		Constant c = copy();
+		c.multiplyFraction(new Constant(1, a));
+		c.reduce();
+		return c.share();
 	}
 
 	/**
@@ -337,13 +692,61 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @throws DifferentRoots If the Roots of the Constants are different.
 	 */
 	public Constant add(Constant a) throws DifferentRoots {
-		if(!roots.equals(a.roots)) {
+		Constant sum = tryAdd(a);
+		if(sum == null) {
 			throw new DifferentRoots();
 		}
+		return sum;
+	}
+
+	/**
+	 * Checks if a can be added to this, which is if they have the same roots.
+	 * @param a The Constant to check.
+	 * @return If this and a have the same roots, true, else false.
+	 */
+	public boolean hasSameRoots(Constant a) {
+		return roots == a.roots || roots.equals(a.roots);
+	}
+
+	/**
+	 * Adds a to this if they have the same roots, or if either is 0.
+	 * @param a Constant to add to this.
+	 * @return this+a, or null if the roots of this and a are different.
+	 */
+	public Constant tryAdd(Constant a) {
+		// 0 has no roots, so like Terms that have added up to 0 can still have more added to them.
+		if(isZero()) {
+			return a;
+		}
+		if(a.isZero()) {
+			return this;
+		}
+		if(!hasSameRoots(a)) {
+			return null;
+		}
+		Constant sum = new Constant();
+		// The roots of the sum are the same as both of these, so the Map is shared.
+		sum.roots = roots;
+		if(bigNumerator == null && a.bigNumerator == null) {
+			try {
+				// Brings both over the lcm of the denominators and adds the numerators.
+				long divide = gcd(denominator, a.denominator);
+				sum.setFraction(Math.addExact(Math.multiplyExact(numerator, a.denominator / divide),
+						Math.multiplyExact(a.numerator, denominator / divide)),
+						Math.multiplyExact(denominator / divide, a.denominator));
+				sum.reduce();
+				return sum.share();
+			} catch(ArithmeticException e) {
+				// Overflowed, or there was a zero denominator, so falls back to BigInteger.
+			}
+		}
 		// Finds the lcm, adds the numerators/denominators and multiplies by the lcm, then sets the denominator to lcm.
-		BigInteger lcm = denominator.multiply(a.denominator).divide(denominator.gcd(a.denominator));
-		return new Constant(numerator.multiply(lcm).divide(denominator).add(
-				a.numerator.multiply(lcm).divide(a.denominator)), lcm);
+		BigInteger den = getDenominator();
+		BigInteger aDen = a.getDenominator();
+		BigInteger lcm = den.multiply(aDen).divide(den.gcd(aDen));
+		sum.setFraction(getNumerator().multiply(lcm).divide(den).add(a.getNumerator().multiply(lcm).divide(aDen)), lcm);
+		sum.reduce();
+		return sum.share();
 	}
 
 	/**
@@ -356,11 +759,33 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 		return add(a.negate());
 	}
 
+	/**
+	 * Subtracts a from this if they have the same roots.
+	 * @param a Constant to subtract from this.
+	 * @return this-a, or null if the roots of this and a are different.
+	 */
+	public Constant trySubtract(Constant a) {
+		return tryAdd(a.negate());
+	}
+
 	/**
 	 * @return -this
 	 */
 	public Constant negate() {
-		return multiply(NEGATE);
+		Constant c = copy();
+		if(bigNumerator == null) {
+			c.numerator = -numerator;
+		} else {
+			c.setFraction(bigNumerator.negate(), bigDenominator);
+		}
+		return c.share();
+	}
+
+	/**
+	 * @return If this is a whole number that fits in an int.
+	 */
+	boolean isInt() {
+		return bigNumerator == null && denominator == 1 && numerator == (int)numerator && roots.isEmpty();
 	}
 
 	/**
@@ -383,46 +808,144 @@ public class Constant extends Number implements Comparable<Number>, Serializable
  		if(power.doubleValue() > Integer.MAX_VALUE) {
  			throw new OverflowException("Power was to big to be an exponent.");
  		}
- 		if(power.numerator.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
- 			BigInteger div = power.numerator.multiply(BigInteger.valueOf(Integer.MAX_VALUE));
- 			power.numerator = BigInteger.valueOf(Integer.MAX_VALUE);
- 			power.denominator = power.denominator.divide(div);
+		// Works on copies of the numerator and denominator of power so power itself, which may be shared, isn't changed.
+		BigInteger powNum = power.getNumerator();
+		BigInteger powDen = power.getDenominator();
+ 		if(powNum.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
+ 			BigInteger div = powNum.multiply(BigInteger.valueOf(Integer.MAX_VALUE));
+ 			powNum = BigInteger.valueOf(Integer.MAX_VALUE);
+ 			powDen = powDen.divide(div);
  		}
- 		if(power.denominator.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
- 			BigInteger div = power.denominator.multiply(BigInteger.valueOf(Integer.MAX_VALUE));
- 			power.denominator = BigInteger.valueOf(Integer.MAX_VALUE);
- 			power.numerator = power.numerator.divide(div);
+ 		if(powDen.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
+ 			BigInteger div = powDen.multiply(BigInteger.valueOf(Integer.MAX_VALUE));
+ 			powDen = BigInteger.valueOf(Integer.MAX_VALUE);
+ 			powNum = powNum.divide(div);
  		}
-		Constant c = clone();
+		int times = powNum.abs().intValueExact();
+		int index = powDen.intValueExact();
 		// If power is less than one, flips this, and raises by -power, else just raises by power.
-		if(power.numerator.compareTo(BigInteger.ZERO) < 0) {
-			c = c.invert();
-			c.numerator = c.numerator.pow(-power.numerator.intValueExact());
-			c.denominator = c.denominator.pow(-power.numerator.intValueExact());
-		} else {
-			c.numerator = c.numerator.pow(power.numerator.intValueExact());
-			c.denominator = c.denominator.pow(power.numerator.intValueExact());
+		Constant base = powNum.signum() < 0 ? invert() : this;
+		Constant c = base.copy();
+		c.raiseFraction(times);
+		// Raises what is in each root. Whole powers of the index are taken straight out of the root, so only what is
+		// left over is raised in it.
+		ArrayList<Entry<Integer, Constant>> raised = new ArrayList<>();
+		c.roots = NO_ROOTS;
+		for(Entry<Integer, Constant> root : base.roots.entrySet()) {
+			Constant in = root.getValue();
+			int whole = times / root.getKey();
+			if(whole > 0) {
+				c.multiplyFraction(in.raise(valueOf(whole)));
+			}
+			if(times % root.getKey() > 0) {
+				raised.add(new SimpleEntry<>(root.getKey() * index, in.raise(valueOf(times % root.getKey()))));
+			}
 		}
-		// If power has a denominator, puts this in a root in a new Constant.
-		if(power.denominator.compareTo(BigInteger.ONE) > 0) {
-			c.roots = new TreeMap<>(Collections.singletonMap(power.denominator.intValueExact(), c.clone()));
-			c.numerator = BigInteger.ONE;
-			c.denominator = BigInteger.ONE;
+		// If power has a denominator, takes that root of the fraction exactly if it can, else puts it in a root.
+		if(index > 1) {
+			BigInteger num = c.getNumerator();
+			BigInteger rootNum = num.signum() < 0 && index % 2 == 0 ? null : exactRoot(num.abs(), index);
+			BigInteger rootDen = rootNum == null ? null : exactRoot(c.getDenominator(), index);
+			if(rootDen != null) {
+				c.setFraction(num.signum() < 0 ? rootNum.negate() : rootNum, rootDen);
+			} else {
+				raised.add(new SimpleEntry<>(index, c.withoutRoots()));
+				c.setFraction(1, 1);
+			}
+		}
+		c.simplify(raised);
+		return c.share();
+	}
+
+	/**
+	 * Finds the integer part of a root of a number. Uses a double when the number fits in one exactly, else Newton's
+	 * method starting from a double estimate.
+	 * @param n The number to take the root of, which isn't negative.
+	 * @param index The index of the root, which is positive.
+	 * @return The largest integer r such that r^index <= n.
+	 */
+	static BigInteger floorRoot(BigInteger n, int index) {
+		if(index == 1 || n.signum() == 0) {
+			return n;
+		}
+		if(n.bitLength() <= 52) {
+			// The estimate is off by at most one, so it is just checked against its neighbors.
+			long value = n.longValue();
+			long root = (long)Math.pow(value, 1. / index);
+			while(root > 0 && powerAbove(root, index, value)) {
+				root--;
+			}
+			while(!powerAbove(root + 1, index, value)) {
+				root++;
+			}
+			return BigInteger.valueOf(root);
+		}
+		// n is below 2^index, so its root is below 2.
+		if(index >= n.bitLength()) {
+			return BigInteger.ONE;
+		}
+		// Shifts n into the range of a double by a multiple of index, estimates the root of that, and shifts back.
+		// The shift is rounded up so at most 1000 bits are left, and the estimate is rounded up so that Newton's
+		// method, which only decreases from above the root, can finish it.
+		int excess = Math.max(0, n.bitLength() - 1000);
+		int shift = (excess + index - 1) / index * index;
+		double estimate = Math.pow(n.shiftRight(shift).doubleValue(), 1. / index);
+		BigInteger root = BigDecimal.valueOf(estimate * (1 + 1e-12) + 1).toBigInteger().shiftLeft(shift / index)
+				.add(BigInteger.ONE);
+		BigInteger indexBig = BigInteger.valueOf(index);
+		BigInteger below = indexBig.subtract(BigInteger.ONE);
+		while(true) {
+			BigInteger next = root.multiply(below).add(n.divide(root.pow(index - 1))).divide(indexBig);
+			if(next.compareTo(root) >= 0) {
+				return root;
+			}
+			root = next;
+		}
+	}
+
+	/**
+	 * Finds a root of a number exactly, if it is a whole number.
+	 * @param n The number to take the root of, which isn't negative.
+	 * @param index The index of the root, which is positive.
+	 * @return The index-th root of n, or null if n isn't a perfect index-th power.
+	 */
+	static BigInteger exactRoot(BigInteger n, int index) {
+		// A power has a multiple of index trailing zero bits, which rules out many numbers without a root.
+		if(n.signum() > 0 && n.getLowestSetBit() % index != 0) {
+			return null;
+		}
+		BigInteger root = floorRoot(n, index);
+		return root.pow(index).equals(n) ? root : null;
+	}
+
+	/**
+	 * @param base A positive long.
+	 * @param power A positive int.
+	 * @param value A long.
+	 * @return If base^power > value.
+	 */
+	private static boolean powerAbove(long base, int power, long value) {
+		try {
+			return pow(base, power) > value;
+		} catch(ArithmeticException e) {
+			return true;
 		}
-		c.simplify();
-		return c;
 	}
 
 	/**
 	 * Inverts this.
 	 * @return 1/this
 	 */
-	@SuppressWarnings("unchecked")
 	public Constant invert() {
-		Constant c = new Constant(denominator, numerator, (TreeMap<Integer, Constant>)roots.clone());
-		c.roots.replaceAll((t, u) -> u.invert());
+		if(roots.isEmpty()) {
+			Constant c = new Constant(getDenominator(), getNumerator());
+			return c.share();
+		}
+		TreeMap<Integer, Constant> inverted = new TreeMap<>();
+		roots.forEach((root, in) -> inverted.put(root, in.invert()));
+		Constant c = new Constant(getDenominator(), getNumerator(), inverted);
 		c.simplify();
-		return c;
+		return c.share();
 	}
 
 	/**
@@ -432,32 +955,60 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 * @return The gcd of a and b.
 	 */
 	public static Constant gcd(Constant a, Constant b) {
-		Constant ans = new Constant(a.numerator.gcd(b.numerator),
-			a.denominator.multiply(b.denominator).divide(a.denominator.gcd(b.denominator)));
-		for(Entry<Integer, Constant> current : a.roots.entrySet()) {
-			Constant other = b.roots.get(current.getKey());
-			if (other != null) {
-				Constant gcd = Constant.gcd(current.getValue(), other);
-				if (!gcd.equals(ONE)) {
-					ans.addRoot(current.getKey(), gcd);
+		Constant ans;
+		if(a.bigNumerator == null && b.bigNumerator == null && a.denominator != 0 && b.denominator != 0) {
+			try {
+				ans = new Constant(gcd(Math.abs(a.numerator), Math.abs(b.numerator)),
+						Math.multiplyExact(a.denominator / gcd(a.denominator, b.denominator), b.denominator));
+			} catch(ArithmeticException e) {
+				ans = new Constant(a.getNumerator().gcd(b.getNumerator()), a.getDenominator().multiply(b.getDenominator())
+						.divide(a.getDenominator().gcd(b.getDenominator())));
+			}
+		} else {
+			ans = new Constant(a.getNumerator().gcd(b.getNumerator()), a.getDenominator().multiply(b.getDenominator())
+					.divide(a.getDenominator().gcd(b.getDenominator())));
+		}
+		if(!a.roots.isEmpty() && !b.roots.isEmpty()) {
+			TreeMap<Integer, Constant> roots = new TreeMap<>();
+			for(Entry<Integer, Constant> current : a.roots.entrySet()) {
+				Constant other = b.roots.get(current.getKey());
+				if (other != null) {
+					Constant gcd = Constant.gcd(current.getValue(), other);
+					if (!gcd.equals(ONE)) {
+						roots.put(current.getKey(), gcd);
+					}
 				}
 			}
+			if(!roots.isEmpty()) {
+				ans.roots = roots;
+			}
 		}
 		ans.simplify();
-		return ans;
+		return ans.share();
 	}
 
 	/**
-	 * Creates a copy of this Constant and returns it.
-	 * @return exact copy of the current Constant.
+	 * Constants can't be changed, so there is no need to copy one.
+	 * @return this
 	 */
 	@Override
 	public Constant clone() {
-		Constant clone = new Constant();
-		clone.numerator = numerator;
-		clone.denominator = denominator;
-		clone.roots = new TreeMap<>(roots);
-		return clone;
+		return this;
+	}
+
+	/**
+	 * Creates a new Constant equal to this, to be changed while making the result of an operation. Shares the Map of
+	 * roots, so it must be replaced rather than changed.
+	 * @return A new Constant equal to this.
+	 */
+	private Constant copy() {
+		Constant copy = new Constant();
+		copy.numerator = numerator;
+		copy.denominator = denominator;
+		copy.bigNumerator = bigNumerator;
+		copy.bigDenominator = bigDenominator;
+		copy.roots = roots;
+		return copy;
 	}
 
 	/**
@@ -474,7 +1025,12 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 			return true;
 		}
 		Constant a = (Constant)o;
-		return a.numerator.equals(numerator) && a.denominator.equals(denominator) && a.roots.equals(roots);
+		// Both are kept in longs whenever they fit, so a Constant in longs never equals one in BigIntegers.
+		if(bigNumerator == null) {
+			return a.bigNumerator == null && a.numerator == numerator && a.denominator == denominator
+					&& a.roots.equals(roots);
+		}
+		return bigNumerator.equals(a.bigNumerator) && bigDenominator.equals(a.bigDenominator) && a.roots.equals(roots);
 	}
 
 	/*
@@ -484,7 +1040,10 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	 */
 	@Override
 	public int hashCode() {
-		return (int)doubleValue() * (1 << 16);
+		// The fraction is always reduced and kept in longs when it fits, so equal Constants hash the same fields.
+		int hash = bigNumerator == null ? Long.hashCode(numerator) * 31 + Long.hashCode(denominator)
+				: bigNumerator.hashCode() * 31 + bigDenominator.hashCode();
+		return roots.isEmpty() ? hash : hash * 31 + roots.hashCode();
 	}
 
 	/*
@@ -497,6 +1056,28 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 		if(o == null) {
 			return 1;
 		}
+		if(o instanceof Constant) {
+			Constant a = (Constant)o;
+			if(roots.isEmpty() && a.roots.isEmpty()) {
+				return compareFractions(this, a);
+			}
+			// Compares the signs first, and if they are the same, raises both to a power that clears their roots.
+			int sign = signum();
+			int aSign = a.signum();
+			if(sign != 2 && aSign != 2) {
+				if(sign != aSign) {
+					return Integer.compare(sign, aSign);
+				}
+				if(sign == 0) {
+					return 0;
+				}
+				Constant raised = clearRoots(this, a);
+				Constant aRaised = raised == null ? null : clearRoots(a, this);
+				if(aRaised != null) {
+					return sign * compareFractions(raised, aRaised);
+				}
+			}
+		}
 		double diff = doubleValue() - o.doubleValue();
 		if(diff > 0) {
 			return 1;
@@ -505,6 +1086,116 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 		}
 	}
 
+	/**
+	 * Compares this to another Constant by value like compareTo, but only returns 0 if they are equal. Constants which
+	 * compareTo can't tell apart, such as those which aren't real, are ordered by their fractions and then their roots.
+	 * @param o The Constant to compare to.
+	 * @return A negative number, zero, or a positive number as this is ordered before, equal to, or after o.
+	 */
+	int compareExactly(Constant o) {
+		if(this == o) {
+			return 0;
+		}
+		int compare = compareTo(o);
+		if(compare != 0 || roots.isEmpty() && o.roots.isEmpty()) {
+			return compare;
+		}
+		compare = compareFractions(this, o);
+		if(compare != 0) {
+			return compare;
+		}
+		if(roots.size() != o.roots.size()) {
+			return roots.size() < o.roots.size() ? -1 : 1;
+		}
+		Iterator<Entry<Integer, Constant>> oRoots = o.roots.entrySet().iterator();
+		for(Entry<Integer, Constant> current : roots.entrySet()) {
+			Entry<Integer, Constant> oCurrent = oRoots.next();
+			compare = Integer.compare(current.getKey(), oCurrent.getKey());
+			if(compare == 0) {
+				compare = current.getValue().compareExactly(oCurrent.getValue());
+			}
+			if(compare != 0) {
+				return compare;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compares the fractions of two Constants, ignoring their roots.
+	 * @param a A Constant.
+	 * @param b The Constant to compare a to.
+	 * @return A negative number, zero, or a positive number as the fraction of a is less than, equal to, or greater
+	 * than the fraction of b.
+	 */
+	private static int compareFractions(Constant a, Constant b) {
+		// Denominators are always positive, so a/b < c/d exactly when a*d < c*b.
+		if(a.bigNumerator == null && b.bigNumerator == null) {
+			if(a.denominator == b.denominator) {
+				return Long.compare(a.numerator, b.numerator);
+			}
+			try {
+				return Long.compare(Math.multiplyExact(a.numerator, b.denominator),
+						Math.multiplyExact(b.numerator, a.denominator));
+			} catch(ArithmeticException e) {
+				// Overflowed, so falls back to BigInteger.
+			}
+		}
+		return a.getNumerator().multiply(b.getDenominator()).compareTo(b.getNumerator().multiply(a.getDenominator()));
+	}
+
+	/**
+	 * Gets the sign of this, without approximating any roots.
+	 * @return -1, 0, or 1 as this is negative, zero or positive, or 2 if this isn't a real number.
+	 */
+	private int signum() {
+		int sign = bigNumerator == null ? Long.signum(numerator) : bigNumerator.signum();
+		for(Entry<Integer, Constant> root : roots.entrySet()) {
+			int inSign = root.getValue().signum();
+			if(inSign == 2 || inSign < 0 && root.getKey() % 2 == 0) {
+				return 2;
+			}
+			sign *= inSign;
+		}
+		return sign;
+	}
+
+	/**
+	 * Raises the absolute value of a to the lcm of the roots of a and b, which leaves no roots in it.
+	 * @param a The Constant to raise.
+	 * @param b The other Constant whose roots are used.
+	 * @return |a|^lcm, or null if that would be too big to be worth working out.
+	 */
+	private static Constant clearRoots(Constant a, Constant b) {
+		long lcm = 1;
+		for(Integer root : a.roots.keySet()) {
+			lcm = lcm / gcd(lcm, root) * root;
+		}
+		for(Integer root : b.roots.keySet()) {
+			lcm = lcm / gcd(lcm, root) * root;
+		}
+		long bits = a.getNumerator().bitLength() + a.getDenominator().bitLength();
+		for(Entry<Integer, Constant> root : a.roots.entrySet()) {
+			bits += (root.getValue().getNumerator().bitLength() + root.getValue().getDenominator().bitLength())
+					/ root.getKey() + 1;
+		}
+		if(lcm > Integer.MAX_VALUE || bits * lcm > MAX_COMPARE_BITS) {
+			return null;
+		}
+		int power = (int)lcm;
+		BigInteger num = a.getNumerator().abs().pow(power);
+		BigInteger den = a.getDenominator().pow(power);
+		for(Entry<Integer, Constant> root : a.roots.entrySet()) {
+			Constant in = root.getValue();
+			int inPower = power / root.getKey();
+			num = num.multiply(in.getNumerator().abs().pow(inPower));
+			den = den.multiply(in.getDenominator().pow(inPower));
+		}
+		Constant raised = new Constant();
+		raised.setFraction(num, den);
+		return raised;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -513,6 +1204,7 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 	@Override
 	public String toString() {
 		StringBuffer r = new StringBuffer();
+		BigInteger numerator = getNumerator();
 		// If there is nothing in the roots, or numerator isn't 1 or -1,adds the numerator to this. If the numerator is
 		// -1 and there are roots, just add the minus sign to this.
 		if (numerator.equals(BigInteger.ONE.negate()) && roots.size() != 0) {
@@ -529,42 +1221,106 @@ public class Constant extends Number implements Comparable<Number>, Serializable
 			}
 			r.append('(' + current.getValue().toString() + ')');
 		}
-		if(!denominator.equals(BigInteger.ONE)) {
-			r.append("/").append(denominator);
+		if(!getDenominator().equals(BigInteger.ONE)) {
+			r.append("/").append(getDenominator());
 		}
 		return r.toString();
 	}
 
 	/**
-	 * Parses a String into a Constant.
+	 * Parses a String into a Constant. The digits are read straight into the numerator, with a power of ten as the
+	 * denominator, so decimals of any length are read exactly.
 	 * @param s String to make into a Constant
 	 * @return s as a Constant.
 	 * @throws NumberFormatException If s is not a properly formatted number.
 	 */
 	public static Constant valueOf(String s) throws NumberFormatException {
-		return new Constant(Double.valueOf(s));
-	}
-
-	/**
-	 * Finds the x, where x is the highest number that meets these requirements: is a factor of inRoot and is an
-	 * rational number when raised to 1/root. This makes the returned Constant for simplifying roots, i.e. to simplify
-	 * 12^(1/2) call extract(2,12) it will return 4. Divide the 12 by 4 to get 3, then raise 4 to 1/2 to get 2. The
-	 * simplified version is 2(3)^1/2
-	 * @return The highest integer that is a factor of inRoot, and when rooted by root is an integer.
-	 */
-	private static Constant extract(int root, Constant inRoot) {
-		if(inRoot.numerator.abs().doubleValue() == Double.POSITIVE_INFINITY || inRoot.denominator.doubleValue()
-			== Double.POSITIVE_INFINITY) {
-			return Constant.ONE;
-		}
-		int i;
-		// Finds the highest number, that raised to
-		for(i = (int)Math.pow(inRoot.numerator.abs().doubleValue(), 1. / root);
-			!inRoot.numerator.mod(BigInteger.valueOf((long)Math.pow(i, root))).equals(BigInteger.ZERO); i--);
-		Constant answer = new Constant(Math.pow(i, root));
-		for(i = (int)Math.pow(inRoot.denominator.doubleValue(), 1. / root);
-			!inRoot.denominator.mod(BigInteger.valueOf((long)Math.pow(i, root))).equals(BigInteger.ZERO); i--);
-		answer.divide((int)Math.pow(i, root));
-		return answer;
+		return valueOf(s, 0, s.length());
+	}
+
+	/**
+	 * Parses part of a String into a Constant, exactly. Accepts an optional sign, digits with at most one decimal point
+	 * and an optional exponent, such as -12.5e3.
+	 * @param s The String to read from.
+	 * @param start The index of the first character of the number.
+	 * @param end The index after the last character of the number.
+	 * @return The number as a Constant.
+	 * @throws NumberFormatException If that part of s is not a properly formatted number.
+	 */
+	static Constant valueOf(CharSequence s, int start, int end) throws NumberFormatException {
+		int i = start;
+		boolean negative = false;
+		if(i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+		// Counts the digits and the digits after the decimal point.
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		for(int j = i; j < end; j++) {
+			char c = s.charAt(j);
+			if(c >= '0' && c <= '9') {
+				digits++;
+				if(point) {
+					scale++;
+				}
+			} else if(c == '.' && !point) {
+				point = true;
+			} else if((c == 'e' || c == 'E') && digits > 0) {
+				// Numbers with exponents are rare, so they are left to BigDecimal.
+				try {
+					return valueOf(new BigDecimal(s.subSequence(start, end).toString()));
+				} catch(NumberFormatException e) {
+					digits = 0;
+					break;
+				}
+			} else {
+				digits = 0;
+				break;
+			}
+		}
+		if(digits == 0) {
+			throw new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+		}
+		// Up to 18 digits always fit in a long.
+		if(digits <= 18) {
+			long numerator = 0;
+			for(; i < end; i++) {
+				char c = s.charAt(i);
+				if(c != '.') {
+					numerator = numerator * 10 + c - '0';
+				}
+			}
+			return valueOf(negative ? -numerator : numerator, POWERS_OF_TEN[scale]);
+		}
+		char[] numerator = new char[digits + 1];
+		numerator[0] = negative ? '-' : '+';
+		for(int j = 1; i < end; i++) {
+			char c = s.charAt(i);
+			if(c != '.') {
+				numerator[j++] = c;
+			}
+		}
+		return new Constant(new BigInteger(new String(numerator)), BigInteger.TEN.pow(scale)).share();
+	}
+
+	/**
+	 * Makes a BigDecimal into an exact Constant.
+	 * @param decimal The BigDecimal to convert.
+	 * @return decimal as a Constant.
+	 * @throws OverflowException If the exponent of decimal is too big to write out.
+	 */
+	private static Constant valueOf(BigDecimal decimal) throws OverflowException {
+		if(Math.abs(decimal.scale()) > MAX_EXPONENT) {
+			throw new OverflowException(decimal.toString());
+		}
+		Constant c;
+		if(decimal.scale() > 0) {
+			c = new Constant(decimal.unscaledValue(), BigInteger.TEN.pow(decimal.scale()));
+		} else {
+			c = new Constant(decimal.unscaledValue().multiply(BigInteger.TEN.pow(-decimal.scale())), BigInteger.ONE);
+		}
+		return c.share();
 	}
 }
@@ -0,0 +1,202 @@
+package lang;
+
+import java.util.Arrays;
+
+/**
+ * Multiplies Expressions which are long polynomials in a single variable, with rational coefficients and most powers
+ * up to their degree filled in. These are kept as arrays of coefficients by power, and multiplied with Karatsuba's
+ * method, which splits each in half so only three half size products are needed rather than four.
+ *
+ * @author Luke Senseney
+ */
+final class DensePolynomial {
+	/**
+	 * Polynomials with fewer coefficients than this are multiplied term by term, which is faster for short ones.
+	 */
+	private static final int KARATSUBA_THRESHOLD = 32;
+
+	/**
+	 * Not to be made, only has static methods.
+	 */
+	private DensePolynomial() {
+	}
+
+	/**
+	 * Multiplies two Expressions if both are long dense polynomials in the same variable.
+	 * @param a An Expression to multiply.
+	 * @param b The other Expression to multiply.
+	 * @return a*b, sorted as simplifyTerms leaves it, or null if either isn't such a polynomial.
+	 */
+	static Expression multiply(Expression a, Expression b) {
+		char var = variable(a);
+		if(var == '\0' || var != variable(b)) {
+			return null;
+		}
+		Constant[] x = coefficients(a, var);
+		Constant[] y = x == null ? null : coefficients(b, var);
+		if(y == null) {
+			return null;
+		}
+		Constant[] product = multiply(x, y);
+		// Highest powers go first when sorted, and the Term without var last.
+		Expression retrn = new Expression();
+		for(int power = product.length - 1; power >= 0; power--) {
+			if(!product[power].equals(Constant.ZERO)) {
+				Term current = new Term(product[power]);
+				if(power > 0) {
+					current.addExponent(var, Constant.valueOf(power));
+				}
+				retrn.terms.add(current);
+			}
+		}
+		return retrn;
+	}
+
+	/**
+	 * Finds the only variable in an Expression.
+	 * @param a The Expression.
+	 * @return The variable, or '\0' if there isn't exactly one other than i.
+	 */
+	private static char variable(Expression a) {
+		char var = '\0';
+		for(Term current : a.terms) {
+			if(current.vars.size() > 1) {
+				return '\0';
+			}
+			for(char on : current.vars.keySet()) {
+				if(on == Term.interImag || var != '\0' && var != on) {
+					return '\0';
+				}
+				var = on;
+			}
+		}
+		return var;
+	}
+
+	/**
+	 * Gets the coefficients of an Expression which is a dense polynomial in var.
+	 * @param a The Expression.
+	 * @param var The only variable in a.
+	 * @return The coefficient of each power of var, or null if a isn't long enough or dense enough, has anything
+	 * irrational or undistributed, or has a power of var that isn't a non-negative int.
+	 */
+	private static Constant[] coefficients(Expression a, char var) {
+		int degree = 0;
+		for(Term current : a.terms) {
+			if(!current.isPlain()) {
+				return null;
+			}
+			Constant power = current.vars.get(var);
+			if(power != null) {
+				if(!power.isInt() || power.intValue() < 0) {
+					return null;
+				}
+				degree = Math.max(degree, power.intValue());
+			}
+		}
+		// Sparse polynomials are better left to Expression.multiply.
+		if(degree + 1 < KARATSUBA_THRESHOLD || a.terms.size() * 2 < degree + 1) {
+			return null;
+		}
+		Constant[] coeffs = new Constant[degree + 1];
+		Arrays.fill(coeffs, Constant.ZERO);
+		for(Term current : a.terms) {
+			Constant power = current.vars.get(var);
+			int index = power == null ? 0 : power.intValue();
+			coeffs[index] = coeffs[index].add(current.coeff);
+		}
+		return coeffs;
+	}
+
+	/**
+	 * Multiplies two polynomials. The longer one is split into pieces as long as the shorter, so each product has
+	 * halves of the same length.
+	 * @param a The coefficients of a polynomial, by power.
+	 * @param b The coefficients of the other polynomial, by power.
+	 * @return The coefficients of a*b, by power.
+	 */
+	static Constant[] multiply(Constant[] a, Constant[] b) {
+		if(a.length < b.length) {
+			Constant[] swap = a;
+			a = b;
+			b = swap;
+		}
+		Constant[] product = new Constant[a.length + b.length - 1];
+		Arrays.fill(product, Constant.ZERO);
+		for(int from = 0; from < a.length; from += b.length) {
+			Constant[] piece = karatsuba(a, from, b, 0, b.length);
+			for(int i = 0; i < piece.length && from + i < product.length; i++) {
+				product[from + i] = product[from + i].add(piece[i]);
+			}
+		}
+		return product;
+	}
+
+	/**
+	 * Multiplies n coefficients of a, starting at aFrom, by n coefficients of b, starting at bFrom. Coefficients past the
+	 * end of either are 0.
+	 * @param a The coefficients of a polynomial.
+	 * @param aFrom The index of the first coefficient of a to use.
+	 * @param b The coefficients of the other polynomial.
+	 * @param bFrom The index of the first coefficient of b to use.
+	 * @param n The number of coefficients to use from each.
+	 * @return The 2n-1 coefficients of the product.
+	 */
+	private static Constant[] karatsuba(Constant[] a, int aFrom, Constant[] b, int bFrom, int n) {
+		Constant[] product = new Constant[2 * n - 1];
+		Arrays.fill(product, Constant.ZERO);
+		if(n < KARATSUBA_THRESHOLD) {
+			for(int i = 0; i < n; i++) {
+				Constant ai = get(a, aFrom + i);
+				if(ai.equals(Constant.ZERO)) {
+					continue;
+				}
+				for(int j = 0; j < n; j++) {
+					Constant bj = get(b, bFrom + j);
+					if(!bj.equals(Constant.ZERO)) {
+						product[i + j] = product[i + j].add(ai.multiply(bj));
+					}
+				}
+			}
+			return product;
+		}
+		// With a = a0 + a1 x^half and b = b0 + b1 x^half,
+		// a*b = a0*b0 + ((a0+a1)(b0+b1) - a0*b0 - a1*b1) x^half + a1*b1 x^(2half).
+		int half = n / 2;
+		int high = n - half;
+		Constant[] low = karatsuba(a, aFrom, b, bFrom, half);
+		Constant[] top = karatsuba(a, aFrom + half, b, bFrom + half, high);
+		Constant[] aSum = new Constant[high];
+		Constant[] bSum = new Constant[high];
+		for(int i = 0; i < high; i++) {
+			aSum[i] = get(a, aFrom + half + i);
+			bSum[i] = get(b, bFrom + half + i);
+			if(i < half) {
+				aSum[i] = aSum[i].add(get(a, aFrom + i));
+				bSum[i] = bSum[i].add(get(b, bFrom + i));
+			}
+		}
+		Constant[] middle = karatsuba(aSum, 0, bSum, 0, high);
+		for(int i = 0; i < low.length; i++) {
+			middle[i] = middle[i].subtract(low[i]);
+			product[i] = low[i];
+		}
+		for(int i = 0; i < top.length; i++) {
+			middle[i] = middle[i].subtract(top[i]);
+			product[2 * half + i] = top[i];
+		}
+		for(int i = 0; i < middle.length; i++) {
+			product[half + i] = product[half + i].add(middle[i]);
+		}
+		return product;
+	}
+
+	/**
+	 * @param coeffs Coefficients of a polynomial.
+	 * @param index A power.
+	 * @return The coefficient of that power, or 0 if it is past the end.
+	 */
+	private static Constant get(Constant[] coeffs, int index) {
+		return index < coeffs.length ? coeffs[index] : Constant.ZERO;
+	}
+}
@@ -4,6 +4,8 @@ public class DifferentRoots extends RuntimeException {
 	private static final long serialVersionUID = 1L;
 
 	public DifferentRoots() {
+		// Thrown where the roots are known to be different, so skips filling in the stack trace.
+		super(null, null, false, false);
 	}
 
 	@Override
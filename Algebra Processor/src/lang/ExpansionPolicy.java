@@ -0,0 +1,23 @@
+package lang;
+
+/**
+ * When sums raised to positive integer powers, such as (x+1)^2, are multiplied out. Used for a single call with
+ * {@link Expression#withExpansionPolicy(ExpansionPolicy, int, java.util.function.Supplier)}.
+ *
+ * @author Luke Senseney
+ */
+public enum ExpansionPolicy {
+	/**
+	 * Always multiplies them out. The default, used outside of withExpansionPolicy.
+	 */
+	EAGER,
+	/**
+	 * Multiplies them out unless the result is estimated to have more Terms than the budget given to withExpansionPolicy,
+	 * in which case they are left factored.
+	 */
+	SIZE_BOUNDED,
+	/**
+	 * Never multiplies them out, leaving them factored.
+	 */
+	LAZY
+}
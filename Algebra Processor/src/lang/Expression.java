@@ -1,26 +1,73 @@
 package lang;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
 
 /**
- * Class that represents a mathematical expression, or a equation if isEquation is true.
+ * Class that represents a mathematical expression, or a equation if isEquation is true. Results share Terms with the
+ * Expressions they were made from, which is safe because a Term is never changed once it is in an Expression.
  *
  * @author Luke Senseney
  */
 public class Expression implements Comparable<Expression>, Serializable, Cloneable {
 	private static final long serialVersionUID = 1L;
+	/**
+	 * The canonical instances of Expressions that have been interned.
+	 */
+	private static final Interner<Expression> INTERNED = new Interner<>();
+	/**
+	 * The most Terms a multinomial expansion may make before they are combined. Bigger powers are found by squaring.
+	 */
+	private static final int MAX_MULTINOMIAL_TERMS = 1 << 14;
+	/**
+	 * The most Terms multiplying out a Term may be estimated to make under ExpansionPolicy.SIZE_BOUNDED, if no other
+	 * budget is given.
+	 */
+	public static final int DEFAULT_EXPANSION_BUDGET = 10000;
+	/**
+	 * The expansion policy set by withExpansionPolicy on each thread, or null on threads outside of it, where sums are
+	 * always multiplied out.
+	 */
+	private static final ThreadLocal<Expansion> EXPANSION = new ThreadLocal<>();
+	/**
+	 * Matches white space, compiled once rather than on every String read.
+	 */
+	static final Pattern WHITE_SPACE = Pattern.compile("\\s+");
 	/**
 	 * Term array that the sum of is this expression, or are equal to 0 if isEquation.
 	 */
 	ArrayList<Term> terms;
 	/**
 	 * If true, it is treated like a equation with the array of Terms set equal to 0. Default is false.
+	 * @deprecated Use {@link #isEquation()} and {@link #setEquation(boolean)}, as setting this directly neither
+	 * simplifies this nor checks that it isn't interned.
 	 */
+	@Deprecated
 	public boolean isEquation = false;
+	/**
+	 * If this is the canonical instance in INTERNED, so is only equal to other canonical Expressions if it is the same
+	 * Expression.
+	 */
+	transient boolean interned = false;
+	/**
+	 * The hash code of the Terms of this once it has been found. 0 if it hasn't been found since this was last changed.
+	 */
+	private transient int hash = 0;
+	/**
+	 * The degree of this once it has been found, else null. Set back to null when this is changed.
+	 */
+	private transient volatile Constant degree = null;
+	/**
+	 * The variables in this once they have been found, else null. Set back to null when this is changed.
+	 */
+	private transient volatile Set<Character> vars = null;
 	/**
 	 * Expression with no terms.
 	 */
@@ -44,7 +91,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	public Expression(String newExpression) throws MathFormatException {
 		terms = new ArrayList<>();
 		// Removes all white space and replaces i and e with their proper respective characters.
-		newExpression = newExpression.replaceAll("\\s", "").replace(Term.IMAG_UNIT, String.valueOf(Term.interImag))
+		newExpression = WHITE_SPACE.matcher(newExpression).replaceAll("").replace(Term.IMAG_UNIT, String.valueOf(Term.interImag))
 				.replace(Term.E, String.valueOf(Term.interE));
 		String[] split = newExpression.split("=");
 		if(split.length > 2) {
@@ -69,33 +116,8 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	 * @throws MathFormatException If s is not formatted correctly.
 	 */
 	private static Expression notEquation(String s) throws MathFormatException {
-		// Finds out how many levels of parentheses are in this equation, throwing errors if parentheses don't match.
-		int inParen = 0;
-		int max = 0;
-		for(char c : s.toCharArray()) {
-			if(c == '(') {
-				inParen++;
-				if(inParen > max) {
-					max = inParen;
-				}
-			} else if(c == ')') {
-				inParen--;
-				if(inParen < 0) {
-					throw new MathFormatException("There is an unmatched close parenthese.");
-				}
-			}
-		}
-		if(inParen != 0) {
-			throw new MathFormatException("There is an unmatched start parenthese.");
-		}
 		Expression retrn = ZERO.clone();
-		// Separates into terms.
-		Matcher findParen = ParenthesesManager.getTerm(max).matcher(s);
-		// Each iteration finds one term.
-		while(findParen.find()) {
-			// Adds the term to the equation.
-			retrn.terms.add(new Term(findParen.group(), max));
-		}
+		retrn.terms = new Parser(s).parseTerms();
 		return retrn;
 	}
 
@@ -145,7 +167,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	/**
 	 * Raises this to another Expression.
 	 * @param power The exponent.
-	 * @return this<sup>power</sup>. Should contain no references to this or power.
+	 * @return this<sup>power</sup>. Shares Terms with this and power, but changes neither.
 	 */
 	public Expression raise(Expression power) {
 		if(power.isConstant()) {
@@ -163,17 +185,17 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 				exp.undistr.put(new Expression(new Term(exp.coeff, terms.get(0).vars)), power);
 			}
 			// Essentially removes every thing in this term except the undistr, which has already been raised to power.
-			return new Expression(new Term(Constant.ONE.clone(), new TreeMap<>(), exp.undistr));
+			return new Expression(new Term(Constant.ONE, new TreeMap<>(), exp.undistr));
 		}
 		// expression^pow could not be simplified in any manner. This just puts into the undistr of a new term.
 		TreeMap<Expression, Expression> d = new TreeMap<>(Collections.singletonMap(this.clone(), power));
-		return new Expression(new Term(Constant.ONE.clone(), new TreeMap<>(), d));
+		return new Expression(new Term(Constant.ONE, new TreeMap<>(), d));
 	}
 
 	/**
 	 * Raises this to a Term.
 	 * @param pow the exponent
-	 * @return this<sup>power</sup>. should contain no references to this or power.
+	 * @return this<sup>power</sup>. Shares Terms with this and power, but changes neither.
 	 */
 	public Expression raise(Constant pow) {
 		if(terms.size() == 1) {
@@ -185,44 +207,180 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 			// If power is 0 return 1
 			return ONE.clone();
 		}
-		Expression retrn = clone();
-		// Multiply expression by itself one times 1 less than the absolute value of the numerator of pow.
-		for(BigInteger i = pow.getNumerator().abs(); i.compareTo(BigInteger.ONE) > 0; i = i.subtract(BigInteger.ONE)) {
-			retrn = retrn.multiply(this);
+		// Raises this to the absolute value of the numerator of pow.
+		BigInteger times = pow.getNumerator().abs();
+		// Leaves this factored if the expansion policy doesn't allow multiplying it out.
+		if(!times.equals(BigInteger.ONE) && !mayExpand(expandedSize(terms.size(), times))) {
+			TreeMap<Expression, Expression> d = new TreeMap<>();
+			d.put(this, new Expression(new Term(pow)));
+			return new Expression(new Term(Constant.ONE, new TreeMap<>(), d));
+		}
+		Expression retrn = expand(times);
+		if(retrn == null) {
+			retrn = square(times);
 		}
 		// If pow is negative or it has a denominator, this cannot be distributed, so it needs to be in the undistr of a
 		// Term. This packages it into a term.
 		if(pow.getNumerator().compareTo(BigInteger.ZERO) < 0 || pow.getDenominator().compareTo(BigInteger.ONE) > 0) {
 			TreeMap<Expression, Expression> d = new TreeMap<>();
-			// sets the numerator of pow to 1 or -1 depending on sign.
-			pow.setNumerator(pow.getNumerator().compareTo(BigInteger.ZERO) < 0 ? BigInteger.ONE.negate() : BigInteger.ONE);
-			d.put(retrn, new Expression(new Term(pow)));
+			// The numerator of pow is 1 or -1 depending on sign. Makes a new Constant rather than changing pow, which may
+			// be shared, such as Constant.NEGATE.
+			Constant unit = new Constant(BigInteger.valueOf(pow.getNumerator().signum()), pow.getDenominator());
+			d.put(retrn, new Expression(new Term(unit)));
 			return new Expression(new Term(Constant.ONE, new TreeMap<>(), d));
 		}
 		return retrn;
 	}
 
+	/**
+	 * Raises this to a positive integer by squaring, so only about twice the number of bits of power multiplications are
+	 * needed.
+	 * @param power The power to raise this to, which is positive.
+	 * @return this<sup>power</sup>.
+	 */
+	private Expression square(BigInteger power) {
+		Expression retrn = null;
+		Expression squared = this;
+		for(int bit = 0; bit < power.bitLength(); bit++) {
+			if(power.testBit(bit)) {
+				retrn = retrn == null ? squared.clone() : retrn.multiply(squared);
+			}
+			if(bit + 1 < power.bitLength()) {
+				squared = squared.multiply(squared);
+			}
+		}
+		return retrn;
+	}
+
+	/**
+	 * Raises this to a positive integer with the multinomial theorem, making each Term of the result directly rather than
+	 * multiplying. Only done when every Term of this is plain, and there aren't too many ways to split the power between
+	 * them.
+	 * @param power The power to raise this to, which is positive.
+	 * @return this<sup>power</sup>, or null if it couldn't be expanded.
+	 */
+	private Expression expand(BigInteger power) {
+		int k = terms.size();
+		if(k < 2 || power.bitLength() > 31) {
+			return null;
+		}
+		for(Term current : terms) {
+			if(!current.isPlain()) {
+				return null;
+			}
+		}
+		if(expandedSize(k, power) > MAX_MULTINOMIAL_TERMS) {
+			return null;
+		}
+		int n = power.intValue();
+		// Each power of each Term, up to n.
+		Constant[][] coeffs = new Constant[k][n + 1];
+		Monomial[][] vars = new Monomial[k][n + 1];
+		for(int i = 0; i < k; i++) {
+			Term current = terms.get(i);
+			coeffs[i][0] = Constant.ONE;
+			vars[i][0] = new Monomial();
+			for(int e = 1; e <= n; e++) {
+				coeffs[i][e] = coeffs[i][e - 1].multiply(current.coeff);
+				vars[i][e] = new Monomial(vars[i][e - 1]);
+				vars[i][e].multiply(current.vars);
+			}
+		}
+		HashMap<Monomial, Constant> sums = new HashMap<>();
+		expand(0, n, Constant.ONE, new Monomial(), coeffs, vars, sums);
+		Expression retrn = new Expression();
+		retrn.addSums(sums);
+		Collections.sort(retrn.terms);
+		return retrn;
+	}
+
+	/**
+	 * Adds every Term of a multinomial expansion with the powers of the first Terms already chosen.
+	 * @param index The index of the next Term to choose the power of.
+	 * @param left The power left to split between it and the Terms after it.
+	 * @param coeff The product of the coefficients so far, times the number of ways to choose them.
+	 * @param product The product of the variables so far.
+	 * @param coeffs The coefficient of each Term to each power.
+	 * @param vars The variables of each Term to each power.
+	 * @param sums Where each Term is added, to the sum of those with its variables.
+	 */
+	private static void expand(int index, int left, Constant coeff, Monomial product, Constant[][] coeffs,
+			Monomial[][] vars, HashMap<Monomial, Constant> sums) {
+		if(index == coeffs.length - 1) {
+			Monomial done = new Monomial(product);
+			done.multiply(vars[index][left]);
+			done.removeZeros();
+			sums.merge(done, coeff.multiply(coeffs[index][left]), Constant::add);
+			return;
+		}
+		// The number of ways to choose which of left factors are this Term, C(left, e).
+		BigInteger choose = BigInteger.ONE;
+		for(int e = 0; e <= left; e++) {
+			if(e > 0) {
+				choose = choose.multiply(BigInteger.valueOf(left - e + 1)).divide(BigInteger.valueOf(e));
+			}
+			Monomial next = new Monomial(product);
+			next.multiply(vars[index][e]);
+			expand(index + 1, left - e, coeff.multiply(coeffs[index][e]).multiply(new Constant(choose, BigInteger.ONE)),
+					next, coeffs, vars, sums);
+		}
+	}
+
+	/**
+	 * Adds a Term to this for each sum of coefficients which isn't 0.
+	 * @param sums Sums of coefficients, by the variables of their Terms.
+	 */
+	private void addSums(Map<Monomial, Constant> sums) {
+		changed();
+		sums.forEach((vars, coeff) -> {
+			if(!coeff.equals(Constant.ZERO)) {
+				terms.add(new Term(vars, coeff));
+			}
+		});
+	}
+
 	/**
 	 * Multiplies this by another Expression.
 	 * @param multiplier Expression to be multiplied by this.
-	 * @return this*(multiplier). Should contain no references to this or multiplier.
+	 * @return this*(multiplier). Shares Terms with this and multiplier, but changes neither.
 	 */
 	public Expression multiply(Expression multiplier) {
+		Expression dense = DensePolynomial.multiply(this, multiplier);
+		if(dense != null) {
+			return dense;
+		}
 		Expression retrn = new Expression();
-		// Multiplies each term in expression by each term in multiplier.
+		// Multiplies each term in expression by each term in multiplier. The product of two plain Terms needs nothing
+		// simplified, so it is added straight into the sum of the products with its variables rather than made a Term.
+		HashMap<Monomial, Constant> sums = new HashMap<>();
 		for(Term exp : terms) {
+			boolean plain = exp.isPlain();
 			for(Term multi : multiplier.terms) {
-				retrn.terms.add(exp.multiply(multi));
+				if(plain && multi.isPlain()) {
+					Monomial vars = new Monomial(exp.vars);
+					vars.multiply(multi.vars);
+					vars.removeZeros();
+					sums.merge(vars, exp.coeff.multiply(multi.coeff), Constant::add);
+				} else {
+					retrn.terms.add(exp.multiply(multi));
+				}
 			}
 		}
-		retrn.simplifyTerms();
+		// The sums are already combined, so only need sorting unless there are other Terms they may be like.
+		boolean combined = retrn.terms.isEmpty();
+		retrn.addSums(sums);
+		if(combined) {
+			Collections.sort(retrn.terms);
+		} else {
+			retrn.simplifyTerms();
+		}
 		return retrn;
 	}
 
 	/**
 	 * Multiplies this by a Term
 	 * @param multiplier Term to be multiplied by this.
-	 * @return this*multiplier. Should contain no references to this or multiplier.
+	 * @return this*multiplier. Shares Terms with this and multiplier, but changes neither.
 	 */
 	public Expression multiply(Term multiplier) {
 		Expression retrn = new Expression();
@@ -237,7 +395,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	/**
 	 * Divides this by divisor.
 	 * @param divisor Expression this should be divided by.
-	 * @return this/divisor. Should contain no references to divisor or this.
+	 * @return this/divisor. Shares Terms with divisor and this, but changes neither.
 	 */
 	public Expression divide(Expression divisor) {
 		return multiply(divisor.invert());
@@ -246,11 +404,14 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	/**
 	 * Adds an Expression to this.
 	 * @param toAdd the Expression to be added
-	 * @return this+toAdd. Should contain no references to this or toAdd,
+	 * @return this+toAdd. Shares Terms with this and toAdd, but changes neither.
 	 */
 	public Expression add(Expression toAdd) {
+		if(isCanonical() && toAdd.isCanonical()) {
+			return merge(toAdd, false);
+		}
 		Expression retrn = clone();
-		retrn.terms.addAll(toAdd.clone().terms);
+		retrn.terms.addAll(toAdd.terms);
 		retrn.simplifyTerms();
 		return retrn;
 	}
@@ -258,28 +419,28 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	/**
 	 * Adds a Term to this.
 	 * @param toAdd the Term to be added
-	 * @return this+toAdd. Should contain no references to this or toAdd.
+	 * @return this+toAdd. Shares Terms with this and toAdd, but changes neither.
 	 */
 	public Expression add(Term toAdd) {
-		Expression retrn = clone();
-		retrn.terms.add(toAdd);
-		retrn.simplifyTerms();
-		return retrn;
+		return add(new Expression(toAdd));
 	}
 
 	/**
 	 * Subtracts an Expression from this.
 	 * @param toSubtract the Expression to be subtracted
-	 * @return this-toSubract. Should contain no references to this or toSubtract.
+	 * @return this-toSubract. Shares Terms with this and toSubtract, but changes neither.
 	 */
 	public Expression subtract(Expression toSubtract) {
+		if(isCanonical() && toSubtract.isCanonical()) {
+			return merge(toSubtract, true);
+		}
 		return add(toSubtract.negate());
 	}
 
 	/**
 	 * Subtracts a Term from this.
 	 * @param toSubtract The Term to be subtracted.
-	 * @return this-toSubract. Should contain no references to this or toSubtract.
+	 * @return this-toSubract. Shares Terms with this and toSubtract, but changes neither.
 	 */
 	public Expression subtract(Term toSubtract) {
 		return add(toSubtract.multiply(Term.NEGATE));
@@ -289,9 +450,246 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	 * @return -this
 	 */
 	public Expression negate() {
+		if(isCanonical()) {
+			return ZERO.merge(this, true);
+		}
 		return multiply(Expression.NEGATIVE);
 	}
 
+	/**
+	 * Adds or subtracts two Expressions which are both as simplifyTerms leaves them, in a single pass over their Terms.
+	 * Only Terms with the same vars and undistr can be like, and those are next to each other in both, so each group of
+	 * them is combined on its own as the two are merged. The groups are nearly always a single Term.
+	 * @param other The Expression to add to or subtract from this.
+	 * @param subtract If other is subtracted rather than added.
+	 * @return this+other, or this-other if subtract, as simplifyTerms would leave it.
+	 */
+	private Expression merge(Expression other, boolean subtract) {
+		Expression retrn = new Expression();
+		retrn.isEquation = isEquation;
+		retrn.terms.ensureCapacity(terms.size() + other.terms.size());
+		ArrayList<Term> group = new ArrayList<>();
+		int i = 0, j = 0;
+		while(i < terms.size() || j < other.terms.size()) {
+			// Finds which has the next vars and undistr. If only one does, nothing in the other can be like its next Term,
+			// so that Term is added alone, unless it is from other and negated, which may change the order of its group.
+			int compare = i == terms.size() ? 1 : j == other.terms.size() ? -1
+					: terms.get(i).compareShape(other.terms.get(j));
+			if(compare < 0) {
+				retrn.terms.add(terms.get(i++));
+				continue;
+			}
+			if(compare > 0 && !subtract) {
+				retrn.terms.add(other.terms.get(j++));
+				continue;
+			}
+			// Takes every Term with these vars and undistr from both.
+			Term first = other.terms.get(j);
+			int end = compare == 0 ? i + 1 : i, otherEnd = j + 1;
+			while(compare == 0 && end < terms.size() && terms.get(end).compareShape(first) == 0) {
+				end++;
+			}
+			while(otherEnd < other.terms.size() && other.terms.get(otherEnd).compareShape(first) == 0) {
+				otherEnd++;
+			}
+			if(end == i && otherEnd == j + 1) {
+				retrn.terms.add(other.terms.get(j).negate());
+			} else {
+				group.clear();
+				group.addAll(terms.subList(i, end));
+				for(int k = j; k < otherEnd; k++) {
+					Term current = subtract ? other.terms.get(k).negate() : other.terms.get(k);
+					// Terms in the group only differ by their coefficients, so those with the same roots are like. Neither
+					// has like Terms in itself, so each Term of other is only checked against those of this. Checks the
+					// Terms of this rather than the sums in the group, as a sum of 0 loses its roots.
+					int like = i;
+					while(like < end && !terms.get(like).coeff.hasSameRoots(current.coeff)) {
+						like++;
+					}
+					if(like < end) {
+						Term sum = group.get(like - i);
+						group.set(like - i, sum.withCoeff(sum.coeff.tryAdd(current.coeff)));
+					} else {
+						group.add(current);
+					}
+				}
+				group.removeIf(t -> t.coeff.equals(Constant.ZERO));
+				Collections.sort(group);
+				retrn.terms.addAll(group);
+			}
+			i = end;
+			j = otherEnd;
+		}
+		return retrn;
+	}
+
+	/**
+	 * Checks in a single pass if this is as simplifyTerms leaves it: sorted, with no Terms of 0, no like Terms, and
+	 * nothing in an undistr that could be distributed.
+	 * @return If simplifyTerms wouldn't change this.
+	 */
+	private boolean isCanonical() {
+		// The first Term with the same vars and undistr as the current one. Only those can be like it.
+		int groupStart = 0;
+		for(int i = 0; i < terms.size(); i++) {
+			Term current = terms.get(i);
+			if(current.coeff.equals(Constant.ZERO)) {
+				return false;
+			}
+			if(toDistribute(current) != null) {
+				return false;
+			}
+			if(i > 0) {
+				int compare = terms.get(i - 1).compareShape(current);
+				if(compare > 0 || compare == 0 && terms.get(i - 1).compareTo(current) >= 0) {
+					return false;
+				}
+				if(compare < 0) {
+					groupStart = i;
+				}
+				for(int k = groupStart; k < i; k++) {
+					if(terms.get(k).coeff.hasSameRoots(current.coeff)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param power The power of something in an undistr.
+	 * @return If it can be distributed, which is when power is a positive integer.
+	 */
+	private static boolean isDistributable(Expression power) {
+		return power.isConstant() && power.terms.get(0).coeff.getDenominator().equals(BigInteger.ONE)
+				&& power.terms.get(0).coeff.getNumerator().compareTo(BigInteger.ONE) >= 0;
+	}
+
+	/**
+	 * Finds the next undistr of a Term which simplifyTerms should distribute, if any can be and the expansion policy
+	 * allows it.
+	 * @param current The Term.
+	 * @return The undistr to distribute, or null if there isn't one.
+	 */
+	private static Entry<Expression, Expression> toDistribute(Term current) {
+		Entry<Expression, Expression> first = null;
+		// Multiplying out every undistr makes about the product of the number of Terms each makes.
+		long size = 1;
+		for(Entry<Expression, Expression> on : current.undistr.entrySet()) {
+			if(isDistributable(on.getValue())) {
+				// A sum to the power of one is only in parentheses, and is always multiplied out.
+				if(on.getValue().terms.get(0).coeff.equals(Constant.ONE)) {
+					return on;
+				}
+				if(first == null) {
+					first = on;
+				}
+				size = Math.min(size * expandedSize(on.getKey().terms.size(), on.getValue().terms.get(0).coeff
+						.getNumerator()), Integer.MAX_VALUE + 1L);
+			}
+		}
+		return first != null && mayExpand(size) ? first : null;
+	}
+
+	/**
+	 * Estimates the number of Terms in an Expression raised to a positive integer once multiplied out, as the number of
+	 * ways to split the power between its Terms, C(power+k-1, k-1). Like Terms can make it fewer.
+	 * @param k The number of Terms in the Expression.
+	 * @param power The power it is raised to.
+	 * @return The estimate, or Integer.MAX_VALUE + 1 if it is more than Integer.MAX_VALUE.
+	 */
+	private static long expandedSize(int k, BigInteger power) {
+		final long tooBig = Integer.MAX_VALUE + 1L;
+		if(power.bitLength() > 31) {
+			return k < 2 ? 1 : tooBig;
+		}
+		int n = power.intValue();
+		long ways = 1;
+		for(int i = 1; i < k; i++) {
+			ways = ways * (n + i) / i;
+			if(ways >= tooBig) {
+				return tooBig;
+			}
+		}
+		return ways;
+	}
+
+	/**
+	 * @param size The estimated number of Terms multiplying something out would make.
+	 * @return If the expansion policy allows it to be multiplied out.
+	 */
+	private static boolean mayExpand(long size) {
+		Expansion expansion = EXPANSION.get();
+		if(expansion == null) {
+			return true;
+		}
+		switch(expansion.policy) {
+		case LAZY:
+			return false;
+		case SIZE_BOUNDED:
+			return size <= expansion.budget;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Runs work with sums raised to positive integer powers, such as (x+1)^2, multiplied out as policy says, with the
+	 * default budget. See {@link #withExpansionPolicy(ExpansionPolicy, int, Supplier)}.
+	 * @param policy When sums raised to positive integer powers are multiplied out.
+	 * @param work What to run.
+	 * @param <T> The type of what work returns.
+	 * @return What work returns.
+	 * @throws NullPointerException If policy is null.
+	 */
+	public static <T> T withExpansionPolicy(ExpansionPolicy policy, Supplier<T> work) {
+		return withExpansionPolicy(policy, DEFAULT_EXPANSION_BUDGET, work);
+	}
+
+	/**
+	 * Runs work with sums raised to positive integer powers, such as (x+1)^2, multiplied out as policy says. Those left
+	 * factored stay in the undistr of a Term, where factor and solve can use them as they are. The policy only applies
+	 * on this thread while work runs, so Expressions made anywhere else, before or after are always multiplied out.
+	 * Expressions read through a ParseCache are cached separately for each policy and budget.
+	 * @param policy When sums raised to positive integer powers are multiplied out.
+	 * @param maxTerms The most Terms multiplying out a Term may be estimated to make under ExpansionPolicy.SIZE_BOUNDED.
+	 * @param work What to run.
+	 * @param <T> The type of what work returns.
+	 * @return What work returns.
+	 * @throws NullPointerException If policy is null.
+	 * @throws IllegalArgumentException If maxTerms is less than 1.
+	 */
+	public static <T> T withExpansionPolicy(ExpansionPolicy policy, int maxTerms, Supplier<T> work) {
+		Objects.requireNonNull(policy);
+		if(maxTerms < 1) {
+			throw new IllegalArgumentException("Expansion budget must be at least 1: " + maxTerms);
+		}
+		Expansion outer = EXPANSION.get();
+		EXPANSION.set(new Expansion(policy, maxTerms));
+		try {
+			return work.get();
+		} finally {
+			if(outer == null) {
+				EXPANSION.remove();
+			} else {
+				EXPANSION.set(outer);
+			}
+		}
+	}
+
+	/**
+	 * @return A key for the expansion policy on this thread, empty if sums are always multiplied out, else ending in a
+	 * space so it can't run into an Expression with white space removed.
+	 */
+	static String expansionKey() {
+		Expansion expansion = EXPANSION.get();
+		if(expansion == null || expansion.policy == ExpansionPolicy.EAGER) {
+			return "";
+		}
+		return expansion.policy == ExpansionPolicy.LAZY ? "LAZY " : "SIZE_BOUNDED " + expansion.budget + " ";
+	}
+
 	/**
 	 * @return 1/this
 	 */
@@ -299,6 +697,69 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 		return raise(Constant.NEGATE);
 	}
 
+	/**
+	 * Factors this with the quadratic formula if it is a quadratic in var. Other variables are kept in a, b and c, so
+	 * this works for families of quadratics such as ax^2+bx+c.
+	 * @param var The variable this is a quadratic in.
+	 * @return The two factors, var+(b+(b^2-4ac)^(1/2))/2a and var+(b-(b^2-4ac)^(1/2))/2a, or null if this has a power
+	 * of var other than 0, 1 and 2, has no var^2, or has var in an undistr.
+	 */
+	private ArrayList<Expression> quadraticFactors(char var) {
+		final Constant two = new Constant(2);
+		// Looks for the a b and c of the quadratic equation.
+		Expression a = new Expression(), b = new Expression(), c = new Expression();
+		// Goes through each term and adds the coeff of var to the proper variable a, b, or c.
+		for(Term current : terms) {
+			Term noVar = current.clone();
+			Constant pow = noVar.vars.remove(var);
+			if(hasAny(noVar, Collections.singleton(var))) {
+				return null;
+			}
+			if(pow == null) {
+				c.terms.add(noVar);
+			} else if(pow.equals(Constant.ONE)) {
+				b.terms.add(noVar);
+			} else if(pow.equals(two)) {
+				a.terms.add(noVar);
+			} else {
+				return null;
+			}
+		}
+		if(a.terms.isEmpty()) {
+			return null;
+		}
+		final Expression expTwo = new Expression(new Term(two));
+		// Plugs a, b, and c into the quadratic formula.
+		Term discrim = new Term(Constant.ONE);
+		// Puts b^2-4ac in to a square root
+		discrim.addExponent(b.raise(expTwo).subtract(new Expression(new Constant(4)).multiply(a.multiply(c))),
+				new Expression(new Constant(1, 2)));
+		discrim.simplifyTerm();
+		// Expression that hold each factor. Plus will hold x+(b+(b^2-4ac)^1/2)/2a, while minus will hold
+		// x+(b-(b^2-4ac)/2a
+		Expression plus = new Expression(), minus;
+		// Adds b to plus
+		plus = plus.add(b);
+		minus = plus.clone();
+		// Adds (b^2-4ac)^1/2 to plus
+		plus = plus.add(discrim);
+		// Subtracts (b^2-4ac)^1/2 from minus
+		minus = minus.subtract(discrim);
+		// Creates the 1/2a
+		Expression negTwoA = expTwo.multiply(a).invert();
+		// Divides both plus and minus by 2a
+		plus = negTwoA.multiply(plus);
+		minus = negTwoA.multiply(minus);
+		// The solutions of a quadratic are the answers generated by the quadratic formula in school
+		// However, the factors are x+(b+-(b^2-4ac)^1/2)/2a. This adds the "x" to the factors.
+		plus = plus.add(new Term(var));
+		minus = minus.add(new Term(var));
+		ArrayList<Expression> factors = new ArrayList<>(2);
+		factors.add(plus);
+		factors.add(minus);
+		return factors;
+	}
+
 	/**
 	 * Gets the greatest common denominator of the gcd of the terms in each
 	 * @param a One Expression to find the gcd of.
@@ -330,53 +791,144 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	}
 
 	/**
-     * Evaluates the Expression/function at the given Constant.
-     * @param x The x-coordinate where the function is being evaluated.
-     */
-    //TODO code evauluate in term.
-    //public void evaluate(char variable, Constant value) {
-    //    for (Term term : terms) {
-    //        term.evaluate(variable, value);
-    //    }
-    //    simplifyTerms();
-    //}
+	 * Replaces a variable in this with an Expression.
+	 * @param var The variable to replace.
+	 * @param value What to replace it with.
+	 * @return this with value in place of var. Shares Terms with this and value, but changes neither.
+	 */
+	public Expression substitute(char var, Expression value) {
+		return substitute(Collections.singletonMap(var, value));
+	}
 
-    /**
+	/**
+	 * Replaces variables in this with Expressions, including in the bases and powers of undistr. All are replaced at
+	 * once, so a variable in one of the values is not replaced again. Only the Terms with a variable being replaced are
+	 * simplified again, then added to the rest of this, which is much faster than making a new Expression from a String.
+	 * @param values The Expression to replace each variable with.
+	 * @return this with each value in place of its variable. Shares Terms with this and values, but changes neither.
+	 */
+	public Expression substitute(Map<Character, Expression> values) {
+		// The Terms without any of the variables are kept as they are, the others are replaced and put in changed.
+		Expression same = new Expression();
+		Expression changed = new Expression();
+		for(Term current : terms) {
+			if(!hasAny(current, values.keySet())) {
+				same.terms.add(current);
+				continue;
+			}
+			// Takes what is being replaced out of a clone of the Term, and multiplies it by each replacement.
+			Term rest = current.clone();
+			ArrayList<Expression> factors = new ArrayList<>();
+			for(Entry<Character, Expression> on : values.entrySet()) {
+				Constant power = rest.vars.remove(on.getKey());
+				if(power != null) {
+					factors.add(on.getValue().raise(power));
+				}
+			}
+			Iterator<Entry<Expression, Expression>> un = rest.undistr.entrySet().iterator();
+			while(un.hasNext()) {
+				Entry<Expression, Expression> on = un.next();
+				if(hasAny(on.getKey(), values.keySet()) || hasAny(on.getValue(), values.keySet())) {
+					factors.add(on.getKey().substitute(values).raise(on.getValue().substitute(values)));
+					un.remove();
+				}
+			}
+			Expression product = new Expression(rest);
+			for(Expression factor : factors) {
+				product = product.multiply(factor);
+			}
+			changed.terms.addAll(product.terms);
+		}
+		changed.simplifyTerms();
+		Expression retrn = same.add(changed);
+		retrn.isEquation = isEquation;
+		return retrn;
+	}
+
+	/**
+	 * @param current A Term.
+	 * @param vars Variables to look for.
+	 * @return If any of vars are in current, including in the bases and powers of its undistr.
+	 */
+	private static boolean hasAny(Term current, Set<Character> vars) {
+		for(char var : vars) {
+			if(current.vars.containsVar(var)) {
+				return true;
+			}
+		}
+		for(Entry<Expression, Expression> on : current.undistr.entrySet()) {
+			if(hasAny(on.getKey(), vars) || hasAny(on.getValue(), vars)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param a An Expression.
+	 * @param vars Variables to look for.
+	 * @return If any of vars are in a, including in the bases and powers of undistr.
+	 */
+	private static boolean hasAny(Expression a, Set<Character> vars) {
+		for(Term current : a.terms) {
+			if(hasAny(current, vars)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
 	 * Combines like Terms, removes 0 terms, and distributes what it can.
 	 */
 	public void simplifyTerms() {
+		if(interned) {
+			throw new UnsupportedOperationException("An interned Expression can't be changed.");
+		}
 		// Finds all undistr in terms that can be distributed, removes them from the Term, and distributes them
 		// and adds them to this.
+		// The Term may be shared, so the undistr is removed from a clone of it. Anything else in it which can be
+		// distributed is left in the product, which is added to the end, and distributed when the loop gets there.
+		// Terms the expansion policy says would be too big to multiply out are left as they are.
 		for(int i = 0; i < terms.size(); i++) {
-			Iterator<Entry<Expression, Expression>> iter = terms.get(i).undistr.entrySet().iterator();
-			while(iter.hasNext()) {
-				Entry<Expression, Expression> current = iter.next();
-				if(current.getValue().isConstant()
-						&& (current.getValue().terms.get(0).coeff.getDenominator().equals(BigInteger.ONE)
-								&& current.getValue().terms.get(0).coeff.getNumerator().compareTo(BigInteger.ONE) >= 0)) {
-					iter.remove();
-					terms.addAll(new Expression(terms.get(i)).multiply(current.getKey()
-							.raise(current.getValue().terms.get(0).coeff)).terms);
-					terms.remove(i--);
-				}
+			Entry<Expression, Expression> current = toDistribute(terms.get(i));
+			if(current != null) {
+				Term rest = terms.get(i).clone();
+				rest.undistr.remove(current.getKey());
+				terms.addAll(new Expression(rest).multiply(current.getKey()
+						.raise(current.getValue().terms.get(0).coeff)).terms);
+				terms.remove(i--);
 			}
 		}
-		// Combines like terms by checking each term against each after them.
-		for(int i = 0; i < terms.size(); i++) {
-			for(int j = terms.size() - 1; j > i; j--) {
-				try {
-					if(Term.isLikeTerm(terms.get(j), terms.get(i))) {
-						terms.get(i).coeff = terms.get(i).coeff.add(terms.get(j).coeff);
-						terms.remove(j);
-					}
-				} catch(DifferentRoots e) {
-
-				}
+		// Combines like terms, adding each term into the first term like it. Like Terms have equal like keys, so the
+		// first of each is found in a HashMap rather than by checking each Term against each other.
+		// The sum replaces the first Term rather than being added into it, as the Term may be shared.
+		HashMap<Term.LikeKey, Integer> firsts = new HashMap<>(terms.size() * 2);
+		ArrayList<Term> combined = new ArrayList<>(terms.size());
+		for(Term current : terms) {
+			Integer like = firsts.putIfAbsent(current.likeKey(), combined.size());
+			if(like == null) {
+				combined.add(current);
+			} else {
+				// Like Terms have the same roots, so this always adds.
+				Term first = combined.get(like);
+				combined.set(like, first.withCoeff(first.coeff.tryAdd(current.coeff)));
 			}
 		}
+		terms = combined;
 		// Removes all terms with the coefficient of 0.
-		terms.removeIf(t -> t.coeff.equals(new Constant()));
+		terms.removeIf(t -> t.coeff.equals(Constant.ZERO));
 		Collections.sort(terms);
+		changed();
+	}
+
+	/**
+	 * Forgets the hash code, degree and variables found for this, as its Terms have changed.
+	 */
+	private void changed() {
+		hash = 0;
+		degree = null;
+		vars = null;
 	}
 
 	/**
@@ -387,7 +939,8 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	public ArrayList<Expression> factor() {
 		// The list of factors to be returned
 		ArrayList<Expression> ans = new ArrayList<>();
-		Term fact = Term.gcd(terms);
+		// The gcd of a single Term is that Term, so this changes a clone of it.
+		Term fact = Term.gcd(terms).clone();
 		// Takes all variables and expressions raised to a negative power and multiplies them to fact.
 		for(Term current : terms) {
 			for(Entry<Character, Constant> on : current.vars.entrySet()) {
@@ -412,13 +965,29 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 				}
 			}
 		}
+		// Divides the expression by fact in order and proceeds to factor that.
+		Expression remaining = divide(new Expression(fact));
+		// Sums to positive integer powers in fact were left factored by the expansion policy, so each is made a factor
+		// of its own as it is rather than multiplied out.
+		ArrayList<Expression> powers = new ArrayList<>();
+		Iterator<Entry<Expression, Expression>> un = fact.undistr.entrySet().iterator();
+		while(un.hasNext()) {
+			Entry<Expression, Expression> on = un.next();
+			if(isDistributable(on.getValue())) {
+				Term power = new Term(Constant.ONE);
+				power.undistr.put(on.getKey(), on.getValue());
+				Expression add = new Expression();
+				add.terms.add(power);
+				powers.add(add);
+				un.remove();
+			}
+		}
 		// Adds fact to the list of factors if it isn't one
 		if(!fact.equals(new Term(new Constant(1)))) {
 			Expression add = new Expression(fact);
 			ans.add(add);
 		}
-		// Divides the expression by fact in order and proceeds to factor that.
-		Expression remaining = divide(new Expression(fact));
+		ans.addAll(powers);
 		final Constant two = new Constant(2);
 		// Checks to see if this is a quadratic.
 		if(remaining.getDegree().equals(two) && getVars().size() == 1) {
@@ -432,50 +1001,11 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 					factBy = chars.iterator().next();
 				}
 			}
-			// Looks for the a b and c of the quadratic equation.
-			Expression a = new Expression(), b = new Expression(), c = new Expression();
-			// Goes through each term and adds the coeff of factBy to the proper variable a, b, or c.
-			for(Term current : remaining.terms) {
-				Term noVar = current.clone();
-				Constant pow = noVar.vars.remove(factBy);
-				if(pow == null) {
-					c.terms.add(noVar);
-				} else if(pow.equals(Constant.ONE)) {
-					b.terms.add(noVar);
-				} else if(pow.equals(two)) {
-					a.terms.add(noVar);
-				}
+			ArrayList<Expression> quadratic = remaining.quadraticFactors(factBy);
+			if(quadratic != null) {
+				ans.addAll(quadratic);
+				return ans;
 			}
-			final Expression expTwo = new Expression(new Term(two));
-			// Plugs a, b, and c into the quadratic formula.
-			Term discrim = new Term(Constant.ONE.clone());
-			// Puts b^2-4ac in to a square root
-			discrim.addExponent(b.raise(expTwo).subtract(new Expression(new Constant(4)).multiply(a.multiply(c))),
-					new Expression(new Constant(1, 2)));
-			discrim.simplifyTerm();
-			// Expression that hold each factor. Plus will hold x+(b+(b^2-4ac)^1/2)/2a, while minus will hold
-			// x+(b-(b^2-4ac)/2a
-			Expression plus = new Expression(), minus;
-			// Adds b to plus
-			plus = plus.add(b);
-			minus = plus.clone();
-			// Adds (b^2-4ac)^1/2 to plus
-			plus = plus.add(discrim);
-			// Subtracts (b^2-4ac)^1/2 from minus
-			minus = minus.subtract(discrim);
-			// Creates the 1/2a
-			Expression negTwoA = expTwo.multiply(a).invert();
-			// Divides both plus and minus by 2a
-			plus = negTwoA.multiply(plus);
-			minus = negTwoA.multiply(minus);
-			// The solutions of a quadratic are the answers generated by the quadratic formula in school
-			// However, the factors are x+(b+-(b^2-4ac)^1/2)/2a. This adds the "x" to the factors.
-			plus = plus.add(new Term(factBy));
-			minus = minus.add(new Term(factBy));
-			// Adds the factors to the list of factors.
-			ans.add(plus);
-			ans.add(minus);
-			return ans;
 		}
 		// If what is left after being divided by the gcd is not one, add it to the factor. However, if the
 		// Expression is one, then the gcd will be one, so it won't be added. Then this won't be added, returning
@@ -549,7 +1079,20 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 					s.value.addAll(solution);
 				}
 			} catch(NotAbleToSolve e) {
-				s.allPossible = false;
+				// factor only uses the quadratic formula when there is a single variable, so a quadratic in iso with
+				// other variables, such as ax^2+bx+c, is factored with it here.
+				ArrayList<Expression> quadratic = current.quadraticFactors(iso);
+				if(quadratic == null) {
+					s.allPossible = false;
+					continue;
+				}
+				for(Expression factor : quadratic) {
+					try {
+						s.value.addAll(factor.solveFact(iso));
+					} catch(NotAbleToSolve again) {
+						s.allPossible = false;
+					}
+				}
 			}
 		}
 		if(s.value.size() == 0) {
@@ -586,7 +1129,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 			}
 			// Goes through this terms undistr for anything this can't solve.
 			for(Entry<Expression, Expression> exp : current.undistr.entrySet()) {
-				if(exp.getKey().getVars().contains(iso)) {
+				if(exp.getKey().hasVar(iso)) {
 					// Checks to see if this term has something like x(x+4)^z
 					if(!pow.equals(new Constant())) {
 						throw new NotAbleToSolve(iso
@@ -600,13 +1143,13 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 					}
 					inUndistr = true;
 				}
-				if(exp.getValue().getVars().contains(iso)) {
+				if(exp.getValue().hasVar(iso)) {
 					throw new NotAbleToSolve(iso + " is in an exponent. Logarithms will be added in future versions.");
 				}
 			}
 		}
 		// Returns null if iso isn't in this equation.
-		if(firstPow == null && secondPow == null) {
+		if(!hasVar(iso)) {
 			return null;
 		}
 		if(firstPow != null && secondPow != null) {
@@ -631,7 +1174,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 		Constant root = Constant.ONE;
 		// Divides the terms according to which have iso in them and which don't
 		for(Term currentTerm : terms) {
-			if(currentTerm.getVars().contains(new Character(iso))) {
+			if(currentTerm.hasVar(iso)) {
 				hasVar.terms.add(currentTerm);
 			} else {
 				noVar.terms.add(currentTerm);
@@ -651,7 +1194,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 				// This goes through this terms undistr to find it.
 				while(isoIn == null) {
 					Entry<Expression, Expression> current = iter.next();
-					if(current.getKey().getVars().contains(iso)) {
+					if(current.getKey().hasVar(iso)) {
 						isoIn = current;
 						iter.remove();
 					}
@@ -676,7 +1219,7 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 			// Roots both sides to get rid of the exponent of isoIn, then moves it back to the same side.
 			retrn = retrn.raise(isoIn.getValue().invert()).multiply(NEGATIVE);
 			// Puts retrn into the same Expression as isoIn's base, to attempt to solve it again.
-			Expression toSolve = isoIn.getKey().clone().add(retrn);
+			Expression toSolve = isoIn.getKey().add(retrn);
 			toSolve.isEquation = true;
 			try {
 				Solution solvedIsoIn = toSolve.solveFor(iso);
@@ -700,26 +1243,53 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	 * @return All variables in this.
 	 */
 	public HashSet<Character> getVars() {
+		Set<Character> found = this.vars;
+		if(found != null) {
+			return new HashSet<>(found);
+		}
 		HashSet<Character> vars = new HashSet<>();
 		for(Term current : terms) {
 			vars.addAll(current.getVars());
 		}
+		this.vars = Collections.unmodifiableSet(new HashSet<>(vars));
 		return vars;
 	}
 
+	/**
+	 * Checks if a variable is in this, the same as getVars().contains(var) without making the set.
+	 * @param var The variable to look for.
+	 * @return If var is in this.
+	 */
+	boolean hasVar(char var) {
+		Set<Character> vars = this.vars;
+		if(vars != null) {
+			return vars.contains(var);
+		}
+		for(Term current : terms) {
+			if(current.hasVar(var)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Gets the degree of the equation, or the highest power of a variable.
 	 * @return the degree of the equation.
 	 */
 	public Constant getDegree() {
-		Constant degree = new Constant();
+		Constant found = this.degree;
+		if(found != null) {
+			return found;
+		}
+		Constant degree = Constant.ZERO;
 		for(Term current : terms) {
-			for(Constant pow : current.vars.values()) {
-				if(pow.compareTo(degree) > 0) {
-					degree = pow;
-				}
+			Constant pow = current.vars.maxPower();
+			if(pow != null && pow.compareTo(degree) > 0) {
+				degree = pow;
 			}
 		}
+		this.degree = degree;
 		return degree;
 	}
 
@@ -730,7 +1300,22 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	 */
 	@Override
 	public int compareTo(Expression o) {
-		return toString().compareTo(o.toString());
+		if(this == o) {
+			return 0;
+		}
+		// Compares the Terms in the order they are sorted in, then shorter Expressions first, then equations last. Terms
+		// only compare as 0 if they are equal, so this agrees with equals.
+		int length = Math.min(terms.size(), o.terms.size());
+		for(int i = 0; i < length; i++) {
+			int compare = terms.get(i).compareTo(o.terms.get(i));
+			if(compare != 0) {
+				return compare;
+			}
+		}
+		if(terms.size() != o.terms.size()) {
+			return terms.size() < o.terms.size() ? -1 : 1;
+		}
+		return Boolean.compare(isEquation, o.isEquation);
 	}
 
 	/**
@@ -743,6 +1328,9 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 		//Sees if a is either an Expression, Term or Constant and checks equality with each.
 		if(a instanceof Expression) {
 			Expression b = (Expression)a;
+			if(this == b || interned && b.interned) {
+				return this == b;
+			}
 			return terms.equals(b.terms) && isEquation == b.isEquation;
 		} else if(a instanceof Term) {
 			return terms.size() == 1 && terms.get(0).equals(a);
@@ -759,7 +1347,13 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 	 */
 	@Override
 	public int hashCode() {
-		return terms.hashCode() << 1 | (isEquation ? 1 : 0);
+		// Only the hash of the Terms is kept, as isEquation may be set directly.
+		int found = hash;
+		if(found == 0) {
+			found = terms.hashCode();
+			hash = found;
+		}
+		return found << 1 | (isEquation ? 1 : 0);
 	}
 
 	/*
@@ -798,6 +1392,68 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 		return retrn;
 	}
 
+	/**
+	 * Compiles the real part of this into a function which evaluates it with doubles, much faster than substituting
+	 * values into it. \u03c0 and e are evaluated as their values. If this is an equation, the side equal to 0 is
+	 * evaluated. Anything a double can't hold, such as a negative number to a fraction, evaluates to NaN.
+	 * @param vars The variables of this, in the order their values will be given in the array.
+	 * @return A function from the values of vars to the real part of this.
+	 * @throws NotEvaluatable If this has a variable not in vars, i to a fraction, or i in something raised to a power or
+	 * in a power.
+	 */
+	public ToDoubleFunction<double[]> compile(char... vars) throws NotEvaluatable {
+		MethodHandle real = new HandleCompiler(vars, false).compile(this, false);
+		return values -> HandleCompiler.invoke(real, values);
+	}
+
+	/**
+	 * Compiles the real part of this into a function of a single variable, the same as {@link #compile(char...)}.
+	 * @param var The only variable of this.
+	 * @return A function from the value of var to the real part of this.
+	 * @throws NotEvaluatable If this has a variable other than var, i to a fraction, or i in something raised to a power
+	 * or in a power.
+	 */
+	public DoubleUnaryOperator compile(char var) throws NotEvaluatable {
+		MethodHandle real = new HandleCompiler(new char[] {var}, true).compile(this, false);
+		return value -> HandleCompiler.invoke(real, value);
+	}
+
+	/**
+	 * Compiles the imaginary part of this, divided by i, the same as {@link #compile(char...)} does the real part.
+	 * @param vars The variables of this, in the order their values will be given in the array.
+	 * @return A function from the values of vars to the imaginary part of this.
+	 * @throws NotEvaluatable If this has a variable not in vars, i to a fraction, or i in something raised to a power or
+	 * in a power.
+	 */
+	public ToDoubleFunction<double[]> compileImaginary(char... vars) throws NotEvaluatable {
+		MethodHandle imaginary = new HandleCompiler(vars, false).compile(this, true);
+		return values -> HandleCompiler.invoke(imaginary, values);
+	}
+
+	/**
+	 * Evaluates the real part of this at many values of a variable at once. If this is a polynomial in var, it is
+	 * evaluated with Horner's method a block of values at a time, else with {@link #compile(char)}.
+	 * @param var The only variable of this.
+	 * @param xs The values of var. May be the same array as out.
+	 * @param out Where the value of this at each of xs is put, at the same index.
+	 * @throws NotEvaluatable If this can't be compiled.
+	 * @throws IllegalArgumentException If out is shorter than xs.
+	 */
+	public void evaluate(char var, double[] xs, double[] out) throws NotEvaluatable {
+		if(out.length < xs.length) {
+			throw new IllegalArgumentException("Only " + out.length + " places for " + xs.length + " values.");
+		}
+		HornerPlan plan = HornerPlan.of(this, var);
+		if(plan != null) {
+			plan.evaluate(xs, out);
+			return;
+		}
+		DoubleUnaryOperator compiled = compile(var);
+		for(int i = 0; i < xs.length; i++) {
+			out[i] = compiled.applyAsDouble(xs[i]);
+		}
+	}
+
 	/**
 	 * @param places decimal places to round to.
 	 * @return A String representation of this with decimals rounded to places rather than fractions.
@@ -818,6 +1474,31 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
 		return output.toString();
 	}
 
+	/**
+	 * Gets the canonical instance of this, which every equal Expression that has been interned shares. Each of its Terms
+	 * is interned as well, so equal sub-expressions anywhere in it are the same instance. The canonical instance is a
+	 * copy, so this may still be changed, and setEquation and simplifyTerms throw an UnsupportedOperationException on it.
+	 * @return The canonical Expression equal to this.
+	 */
+	public Expression intern() {
+		if(interned) {
+			return this;
+		}
+		return INTERNED.intern(this, found -> {
+			Expression a = clone();
+			a.terms.replaceAll(Term::intern);
+			a.interned = true;
+			return a;
+		});
+	}
+
+	/**
+	 * @return The table of interned Expressions, to see how many there are and how often they are shared.
+	 */
+	public static Interner<Expression> getInterner() {
+		return INTERNED;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -830,12 +1511,37 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
         try {
             a = (Expression) super.clone();
             a.terms = (ArrayList<Term>) a.terms.clone();
-            a.terms.replaceAll(Term::clone);
+            a.interned = false;
+            a.changed();
         }catch (CloneNotSupportedException e){
         }
 		return a;
 	}
 
+	/**
+	 * An expansion policy set by withExpansionPolicy, with its budget.
+	 */
+	private static final class Expansion {
+		/**
+		 * When sums raised to positive integer powers are multiplied out.
+		 */
+		final ExpansionPolicy policy;
+		/**
+		 * The most Terms multiplying out a Term may be estimated to make under ExpansionPolicy.SIZE_BOUNDED.
+		 */
+		final int budget;
+
+		/**
+		 * Creates a new Expansion.
+		 * @param policy When sums raised to positive integer powers are multiplied out.
+		 * @param budget The most Terms multiplying out a Term may be estimated to make under SIZE_BOUNDED.
+		 */
+		Expansion(ExpansionPolicy policy, int budget) {
+			this.policy = policy;
+			this.budget = budget;
+		}
+	}
+
 	/**
 	 * Class to sort Terms by the power of a certain variable.
 	 *
@@ -874,7 +1580,15 @@ public class Expression implements Comparable<Expression>, Serializable, Cloneab
         return isEquation;
     }
 
+	/**
+	 * Sets if this is an equation, with its Terms equal to 0, and simplifies it.
+	 * @param isEquation If this is an equation.
+	 * @throws UnsupportedOperationException If this is interned.
+	 */
     public void setEquation(boolean isEquation) {
+		if(interned) {
+			throw new UnsupportedOperationException("An interned Expression can't be changed.");
+		}
         this.isEquation = isEquation;
         simplifyTerms();
     }
@@ -0,0 +1,243 @@
+package lang;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Factors positive integers into primes, for pulling whole powers out of roots. Small primes are divided out using a
+ * sieve, and whatever is left is split with Pollard's rho. The most recent factorizations are cached, since the same
+ * numbers tend to end up in roots over and over.
+ *
+ * @author Luke Senseney
+ */
+final class Factorizer {
+	/**
+	 * All primes below this are found by the sieve and divided out first.
+	 */
+	private static final int SIEVE_LIMIT = 1 << 16;
+	/**
+	 * The primes below SIEVE_LIMIT, in order.
+	 */
+	private static final int[] PRIMES;
+	/**
+	 * The most factorizations kept in CACHE.
+	 */
+	private static final int MAX_CACHED = 1024;
+	/**
+	 * Numbers below this are factored by trial division alone, and are not cached.
+	 */
+	private static final BigInteger TRIAL_LIMIT = BigInteger.valueOf((long)SIEVE_LIMIT * SIEVE_LIMIT);
+	/**
+	 * The certainty given to BigInteger.isProbablePrime. The chance of a composite being called prime is 2^-CERTAINTY.
+	 */
+	private static final int CERTAINTY = 50;
+	/**
+	 * The most steps tried for each constant of Pollard's rho before giving up on a number.
+	 */
+	private static final int MAX_RHO_STEPS = 1 << 16;
+	/**
+	 * The number of constants tried in Pollard's rho before giving up on a number.
+	 */
+	private static final int MAX_RHO_TRIES = 2;
+	/**
+	 * The most recent factorizations, from least to most recently used.
+	 */
+	private static final LinkedHashMap<BigInteger, SortedMap<BigInteger, Integer>> CACHE =
+			new LinkedHashMap<BigInteger, SortedMap<BigInteger, Integer>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BigInteger, SortedMap<BigInteger, Integer>> eldest) {
+			return size() > MAX_CACHED;
+		}
+	};
+	static {
+		// Sieve of Eratosthenes.
+		boolean[] composite = new boolean[SIEVE_LIMIT];
+		int count = 0;
+		for(int i = 2; i < SIEVE_LIMIT; i++) {
+			if(!composite[i]) {
+				count++;
+				for(long j = (long)i * i; j < SIEVE_LIMIT; j += i) {
+					composite[(int)j] = true;
+				}
+			}
+		}
+		PRIMES = new int[count];
+		for(int i = 2, j = 0; i < SIEVE_LIMIT; i++) {
+			if(!composite[i]) {
+				PRIMES[j++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Not to be made, only has static methods.
+	 */
+	private Factorizer() {
+	}
+
+	/**
+	 * Factors a positive integer into primes. A factor too big to be split in a reasonable time is left as is, as if it
+	 * were prime, so every factor is prime except perhaps for those with hundreds of bits.
+	 * @param n The integer to factor.
+	 * @return Each prime factor of n mapped to how many times it divides n, unmodifiable.
+	 * @throws IllegalArgumentException If n isn't positive.
+	 */
+	static SortedMap<BigInteger, Integer> factor(BigInteger n) throws IllegalArgumentException {
+		if(n.signum() <= 0) {
+			throw new IllegalArgumentException(n + " isn't positive, so can't be factored.");
+		}
+		boolean cache = n.compareTo(TRIAL_LIMIT) >= 0;
+		if(cache) {
+			synchronized(CACHE) {
+				SortedMap<BigInteger, Integer> cached = CACHE.get(n);
+				if(cached != null) {
+					return cached;
+				}
+			}
+		}
+		TreeMap<BigInteger, Integer> factors = new TreeMap<>();
+		BigInteger left = n.bitLength() < 63 ? trialDivide(n.longValue(), factors) : trialDivide(n, factors);
+		if(!left.equals(BigInteger.ONE)) {
+			split(left, factors);
+		}
+		SortedMap<BigInteger, Integer> result = Collections.unmodifiableSortedMap(factors);
+		if(cache) {
+			synchronized(CACHE) {
+				CACHE.put(n, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Divides all of the primes from the sieve out of n.
+	 * @param n The number to divide, which is positive.
+	 * @param factors Where to add the primes found.
+	 * @return What is left of n, which has no factors below SIEVE_LIMIT.
+	 */
+	private static BigInteger trialDivide(long n, TreeMap<BigInteger, Integer> factors) {
+		for(int p : PRIMES) {
+			if((long)p * p > n) {
+				break;
+			}
+			int count = 0;
+			while(n % p == 0) {
+				n /= p;
+				count++;
+			}
+			if(count > 0) {
+				factors.put(BigInteger.valueOf(p), count);
+			}
+		}
+		// Anything left is either 1, prime, or only has factors above SIEVE_LIMIT.
+		if(n > 1 && n < TRIAL_LIMIT.longValue()) {
+			factors.merge(BigInteger.valueOf(n), 1, Integer::sum);
+			return BigInteger.ONE;
+		}
+		return BigInteger.valueOf(n);
+	}
+
+	/**
+	 * Divides all of the primes from the sieve out of n.
+	 * @param n The number to divide, which is positive.
+	 * @param factors Where to add the primes found.
+	 * @return What is left of n, which has no factors below SIEVE_LIMIT.
+	 */
+	private static BigInteger trialDivide(BigInteger n, TreeMap<BigInteger, Integer> factors) {
+		for(int p : PRIMES) {
+			BigInteger prime = BigInteger.valueOf(p);
+			int count = 0;
+			BigInteger[] divided;
+			while((divided = n.divideAndRemainder(prime))[1].signum() == 0) {
+				n = divided[0];
+				count++;
+			}
+			if(count > 0) {
+				factors.put(prime, count);
+				if(n.bitLength() < 63) {
+					return trialDivide(n.longValue(), factors);
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Splits a number with no factors below SIEVE_LIMIT into primes.
+	 * @param n The number to split, which is greater than 1.
+	 * @param factors Where to add the primes found.
+	 */
+	private static void split(BigInteger n, TreeMap<BigInteger, Integer> factors) {
+		if(n.isProbablePrime(CERTAINTY)) {
+			factors.merge(n, 1, Integer::sum);
+			return;
+		}
+		// Pollard's rho is slow on powers of large primes, so those are found first. Since n has no factors below
+		// SIEVE_LIMIT, it can only be a power up to its number of bits over those of SIEVE_LIMIT.
+		for(int power = 2; power <= n.bitLength() / 16; power++) {
+			BigInteger root = Constant.exactRoot(n, power);
+			if(root != null) {
+				TreeMap<BigInteger, Integer> rootFactors = new TreeMap<>();
+				split(root, rootFactors);
+				final int times = power;
+				rootFactors.forEach((prime, count) -> factors.merge(prime, count * times, Integer::sum));
+				return;
+			}
+		}
+		BigInteger divisor = rho(n);
+		if(divisor == null) {
+			// Couldn't be split in time, so it is kept whole.
+			factors.merge(n, 1, Integer::sum);
+			return;
+		}
+		split(divisor, factors);
+		split(n.divide(divisor), factors);
+	}
+
+	/**
+	 * Finds a factor of a composite number with Brent's version of Pollard's rho.
+	 * @param n The number to find a factor of, which is composite and odd.
+	 * @return A factor of n other than 1 and n, or null if none was found in time.
+	 */
+	private static BigInteger rho(BigInteger n) {
+		for(int c = 1; c <= MAX_RHO_TRIES; c++) {
+			BigInteger add = BigInteger.valueOf(c);
+			BigInteger y = BigInteger.valueOf(2);
+			BigInteger x = y;
+			BigInteger saved = y;
+			BigInteger divisor = BigInteger.ONE;
+			BigInteger product = BigInteger.ONE;
+			// Takes the gcd of the product of many differences at once, since the gcd is much slower than a product.
+			int batch = 128;
+			for(int steps = 0, power = 1; divisor.equals(BigInteger.ONE) && steps < MAX_RHO_STEPS; power *= 2) {
+				x = y;
+				for(int i = 0; i < power && divisor.equals(BigInteger.ONE) && steps < MAX_RHO_STEPS; i += batch) {
+					saved = y;
+					for(int j = 0; j < Math.min(batch, power - i); j++, steps++) {
+						y = y.multiply(y).add(add).mod(n);
+						product = product.multiply(x.subtract(y).abs()).mod(n);
+					}
+					divisor = product.gcd(n);
+				}
+			}
+			if(divisor.equals(n)) {
+				// The batch overshot, so steps through it again one at a time.
+				y = saved;
+				do {
+					y = y.multiply(y).add(add).mod(n);
+					divisor = x.subtract(y).abs().gcd(n);
+				} while(divisor.equals(BigInteger.ONE));
+			}
+			if(!divisor.equals(BigInteger.ONE) && !divisor.equals(n)) {
+				return divisor;
+			}
+		}
+		return null;
+	}
+}
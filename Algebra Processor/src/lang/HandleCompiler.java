@@ -0,0 +1,280 @@
+package lang;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Compiles Expressions into trees of MethodHandles which evaluate them with doubles. Each handle takes either the values
+ * of the variables, in the order they were given, as a double[], or the value of the only variable as a double, and
+ * returns a double. Once a handle has been called enough the JVM compiles the whole tree to bytecode, so it runs close
+ * to as fast as the same arithmetic written by hand.
+ *
+ * @author Luke Senseney
+ */
+final class HandleCompiler {
+	/**
+	 * Adds two doubles, (double, double)double.
+	 */
+	private static final MethodHandle ADD;
+	/**
+	 * Multiplies two doubles, (double, double)double.
+	 */
+	private static final MethodHandle MULTIPLY;
+	/**
+	 * Math.pow, (double, double)double.
+	 */
+	private static final MethodHandle POW;
+	/**
+	 * Raises a double to an int by squaring, (double, int)double.
+	 */
+	private static final MethodHandle POW_INT;
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodType binary = MethodType.methodType(double.class, double.class, double.class);
+		try {
+			ADD = lookup.findStatic(HandleCompiler.class, "add", binary);
+			MULTIPLY = lookup.findStatic(HandleCompiler.class, "multiply", binary);
+			POW = lookup.findStatic(Math.class, "pow", binary);
+			POW_INT = lookup.findStatic(HandleCompiler.class, "pow",
+					MethodType.methodType(double.class, double.class, int.class));
+		} catch(ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	/**
+	 * The variables, in the order their values are given.
+	 */
+	private final char[] vars;
+	/**
+	 * The type of every handle made, (double[])double, or (double)double if there is one variable given as a double.
+	 */
+	private final MethodType type;
+
+	/**
+	 * Creates a new HandleCompiler.
+	 * @param vars The variables, in the order their values will be given.
+	 * @param unary If the handles should take the value of the only variable as a double rather than a double[].
+	 * @throws IllegalArgumentException If unary and there isn't exactly one variable.
+	 */
+	HandleCompiler(char[] vars, boolean unary) {
+		if(unary && vars.length != 1) {
+			throw new IllegalArgumentException("A unary evaluator needs exactly one variable.");
+		}
+		this.vars = vars.clone();
+		type = MethodType.methodType(double.class, unary ? double.class : double[].class);
+	}
+
+	/**
+	 * Compiles the real or imaginary part of an Expression. If it is an equation, the side equal to 0 is compiled.
+	 * @param a The Expression to compile.
+	 * @param imaginary If the imaginary part should be compiled, divided by i, rather than the real part.
+	 * @return A handle which evaluates that part of a.
+	 * @throws NotEvaluatable If a has a variable that wasn't given, i to a fraction, or anything raised to something
+	 * with i.
+	 */
+	MethodHandle compile(Expression a, boolean imaginary) throws NotEvaluatable {
+		// The sum of the Terms without variables, and handles for the rest.
+		double constant = 0;
+		ArrayList<MethodHandle> sum = new ArrayList<>(a.terms.size());
+		for(Term current : a.terms) {
+			// i to the power of the Term decides which part it is in and its sign, as i^2=-1.
+			int turns = turns(current);
+			if(turns % 2 != (imaginary ? 1 : 0)) {
+				continue;
+			}
+			double coeff = turns < 2 ? current.coeff.doubleValue() : -current.coeff.doubleValue();
+			ArrayList<MethodHandle> product = new ArrayList<>();
+			for(Entry<Character, Constant> on : current.vars.entrySet()) {
+				char var = on.getKey();
+				if(var == Term.interImag) {
+					continue;
+				}
+				// \u03c0 and e are numbers, so are multiplied into the coefficient.
+				if(var == Term.PI || var == Term.interE) {
+					coeff *= Math.pow(var == Term.PI ? Math.PI : Math.E, on.getValue().doubleValue());
+					continue;
+				}
+				product.add(power(variable(var), on.getValue()));
+			}
+			for(Entry<Expression, Expression> on : current.undistr.entrySet()) {
+				MethodHandle base = real(on.getKey());
+				if(on.getValue().isConstant()) {
+					product.add(power(base, on.getValue().terms.get(0).coeff));
+				} else {
+					product.add(combine(POW, base, real(on.getValue())));
+				}
+			}
+			if(product.isEmpty()) {
+				constant += coeff;
+			} else {
+				MethodHandle term = reduce(MULTIPLY, product);
+				sum.add(coeff == 1 ? term : MethodHandles.filterReturnValue(term,
+						MethodHandles.insertArguments(MULTIPLY, 0, coeff)));
+			}
+		}
+		if(sum.isEmpty()) {
+			return MethodHandles.dropArguments(MethodHandles.constant(double.class, constant), 0, type.parameterType(0));
+		}
+		MethodHandle retrn = reduce(ADD, sum);
+		return constant == 0 ? retrn : MethodHandles.filterReturnValue(retrn,
+				MethodHandles.insertArguments(ADD, 0, constant));
+	}
+
+	/**
+	 * Compiles an Expression which must be real, such as a base or power in an undistr.
+	 * @param a The Expression to compile.
+	 * @return A handle which evaluates a.
+	 * @throws NotEvaluatable If a could have an imaginary part, or can't be compiled.
+	 */
+	private MethodHandle real(Expression a) throws NotEvaluatable {
+		for(Term current : a.terms) {
+			if(turns(current) % 2 != 0) {
+				throw new NotEvaluatable(a + " is raised to a power or is a power, and has an imaginary part.");
+			}
+		}
+		return compile(a, false);
+	}
+
+	/**
+	 * @param a A Term.
+	 * @return The power of i in a, mod 4.
+	 * @throws NotEvaluatable If i is raised to a fraction in a.
+	 */
+	private static int turns(Term a) throws NotEvaluatable {
+		Constant imag = a.vars.get(Term.interImag);
+		if(imag == null) {
+			return 0;
+		}
+		if(!imag.isInt()) {
+			throw new NotEvaluatable(Term.IMAG_UNIT + " is raised to " + imag + ".");
+		}
+		return Math.floorMod(imag.intValue(), 4);
+	}
+
+	/**
+	 * @param var A variable.
+	 * @return A handle which gets the value of var.
+	 * @throws NotEvaluatable If var isn't one of the variables given.
+	 */
+	private MethodHandle variable(char var) throws NotEvaluatable {
+		for(int i = 0; i < vars.length; i++) {
+			if(vars[i] == var) {
+				if(type.parameterType(0) == double.class) {
+					return MethodHandles.identity(double.class);
+				}
+				return MethodHandles.insertArguments(MethodHandles.arrayElementGetter(double[].class), 1, i);
+			}
+		}
+		throw new NotEvaluatable(var + " is not one of the variables given.");
+	}
+
+	/**
+	 * @param base A handle.
+	 * @param power The power to raise it to.
+	 * @return A handle which raises the result of base to power.
+	 */
+	private static MethodHandle power(MethodHandle base, Constant power) {
+		if(power.equals(Constant.ONE)) {
+			return base;
+		}
+		if(power.isInt()) {
+			return MethodHandles.filterReturnValue(base, MethodHandles.insertArguments(POW_INT, 1, power.intValue()));
+		}
+		return MethodHandles.filterReturnValue(base, MethodHandles.insertArguments(POW, 1, power.doubleValue()));
+	}
+
+	/**
+	 * Combines handles with an operation, in a balanced tree so it isn't too deep to compile.
+	 * @param op The operation, (double, double)double.
+	 * @param handles The handles to combine, of which there is at least one.
+	 * @return A handle which combines the results of handles with op.
+	 */
+	private MethodHandle reduce(MethodHandle op, List<MethodHandle> handles) {
+		if(handles.size() == 1) {
+			return handles.get(0);
+		}
+		int half = handles.size() / 2;
+		return combine(op, reduce(op, handles.subList(0, half)), reduce(op, handles.subList(half, handles.size())));
+	}
+
+	/**
+	 * @param op An operation, (double, double)double.
+	 * @param a A handle.
+	 * @param b Another handle.
+	 * @return A handle which gives the results of a and b, with the same argument, to op.
+	 */
+	private MethodHandle combine(MethodHandle op, MethodHandle a, MethodHandle b) {
+		return MethodHandles.permuteArguments(MethodHandles.filterArguments(op, 0, a, b), type, 0, 0);
+	}
+
+	/**
+	 * @param a A double.
+	 * @param b Another double.
+	 * @return a+b
+	 */
+	private static double add(double a, double b) {
+		return a + b;
+	}
+
+	/**
+	 * @param a A double.
+	 * @param b Another double.
+	 * @return a*b
+	 */
+	private static double multiply(double a, double b) {
+		return a * b;
+	}
+
+	/**
+	 * Raises a double to an int by squaring.
+	 * @param base The double.
+	 * @param power The int.
+	 * @return base<sup>power</sup>
+	 */
+	private static double pow(double base, int power) {
+		double retrn = 1;
+		for(long left = Math.abs((long)power); left != 0; left >>>= 1) {
+			if((left & 1) != 0) {
+				retrn *= base;
+			}
+			base *= base;
+		}
+		return power < 0 ? 1 / retrn : retrn;
+	}
+
+	/**
+	 * Calls a handle made by a HandleCompiler which takes a double[].
+	 * @param handle The handle.
+	 * @param values The value of each variable.
+	 * @return The result of handle.
+	 */
+	static double invoke(MethodHandle handle, double[] values) {
+		try {
+			return (double)handle.invokeExact(values);
+		} catch(RuntimeException | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Calls a handle made by a HandleCompiler which takes a double.
+	 * @param handle The handle.
+	 * @param value The value of the variable.
+	 * @return The result of handle.
+	 */
+	static double invoke(MethodHandle handle, double value) {
+		try {
+			return (double)handle.invokeExact(value);
+		} catch(RuntimeException | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package lang;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+
+/**
+ * Evaluates a polynomial in a single variable at many points at once with Horner's method,
+ * c<sub>0</sub>+x(c<sub>1</sub>+x(c<sub>2</sub>+...)). Points are taken a block at a time, and each coefficient is
+ * applied to the whole block before the next, so the inner loop is a plain loop over arrays which the JIT compiles to
+ * vector instructions.
+ *
+ * @author Luke Senseney
+ */
+final class HornerPlan {
+	/**
+	 * The number of points evaluated together, few enough that they stay in the cache while every coefficient is applied.
+	 */
+	private static final int BLOCK = 512;
+	/**
+	 * Polynomials of this degree or more are only evaluated with a HornerPlan if at least a quarter of their powers have
+	 * coefficients, as Horner's method takes a step for every power up to the degree.
+	 */
+	private static final int SPARSE_DEGREE = 16;
+	/**
+	 * The coefficient of each power, by power.
+	 */
+	private final double[] coeffs;
+
+	/**
+	 * Creates a new HornerPlan.
+	 * @param coeffs The coefficient of each power, by power. At least one.
+	 */
+	private HornerPlan(double[] coeffs) {
+		this.coeffs = coeffs;
+	}
+
+	/**
+	 * Makes a HornerPlan for an Expression if it is a polynomial in var.
+	 * @param a The Expression.
+	 * @param var The variable the points are values of.
+	 * @return A HornerPlan evaluating a, or null if a has any variable other than var, \u03c0 and e, anything in an
+	 * undistr, i, or a power of var which isn't a non-negative int, or if it is too sparse.
+	 */
+	static HornerPlan of(Expression a, char var) {
+		int degree = 0;
+		for(Term current : a.terms) {
+			if(!current.undistr.isEmpty()) {
+				return null;
+			}
+			for(Entry<Character, Constant> on : current.vars.entrySet()) {
+				if(on.getKey() == var) {
+					Constant power = on.getValue();
+					if(!power.isInt() || power.intValue() < 0) {
+						return null;
+					}
+					degree = Math.max(degree, power.intValue());
+				} else if(on.getKey() != Term.PI && on.getKey() != Term.interE) {
+					return null;
+				}
+			}
+		}
+		if(degree >= SPARSE_DEGREE && a.terms.size() * 4 < degree + 1) {
+			return null;
+		}
+		double[] coeffs = new double[degree + 1];
+		for(Term current : a.terms) {
+			double coeff = current.coeff.doubleValue();
+			int power = 0;
+			for(Entry<Character, Constant> on : current.vars.entrySet()) {
+				if(on.getKey() == var) {
+					power = on.getValue().intValue();
+				} else {
+					coeff *= Math.pow(on.getKey() == Term.PI ? Math.PI : Math.E, on.getValue().doubleValue());
+				}
+			}
+			coeffs[power] += coeff;
+		}
+		return new HornerPlan(coeffs);
+	}
+
+	/**
+	 * Evaluates the polynomial at each point.
+	 * @param xs The points. May be the same array as out.
+	 * @param out Where the value at each point is put, at the same index. At least as long as xs.
+	 */
+	void evaluate(double[] xs, double[] out) {
+		int degree = coeffs.length - 1;
+		// Each block of points is copied into x and evaluated in sum, then copied to out. The JIT only vectorizes the
+		// loop when it knows the arrays are different, and this means xs may be out.
+		double[] x = new double[Math.min(BLOCK, xs.length)];
+		double[] sum = new double[x.length];
+		for(int from = 0; from < xs.length; from += BLOCK) {
+			int length = Math.min(BLOCK, xs.length - from);
+			System.arraycopy(xs, from, x, 0, length);
+			Arrays.fill(sum, 0, length, coeffs[degree]);
+			for(int power = degree - 1; power >= 0; power--) {
+				double coeff = coeffs[power];
+				for(int i = 0; i < length; i++) {
+					sum[i] = sum[i] * x[i] + coeff;
+				}
+			}
+			System.arraycopy(sum, 0, out, from, length);
+		}
+	}
+}
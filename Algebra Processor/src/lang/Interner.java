@@ -0,0 +1,133 @@
+package lang;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * A table of canonical instances, so that equal values can share a single instance and be told apart by reference.
+ * Only weak references are held, so an instance is dropped from the table once nothing else uses it. Safe to use from
+ * multiple threads. The table is split into stripes by hash code, each locked on its own, so threads interning
+ * different values rarely wait for each other.
+ *
+ * @param <T> The type of the values held.
+ * @author Luke Senseney
+ */
+public final class Interner<T> {
+	/**
+	 * The number of stripes, a power of 2.
+	 */
+	private static final int STRIPES = 64;
+	/**
+	 * Each canonical instance, mapped to a reference to itself so it can be found from an equal value, in the stripe
+	 * for its hash code. Each stripe is locked on itself.
+	 */
+	private final WeakHashMap<T, WeakReference<T>>[] stripes;
+	/**
+	 * Number of values which an equal instance was found for.
+	 */
+	private final LongAdder hits = new LongAdder();
+	/**
+	 * Number of values which became the canonical instance.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a new empty Interner.
+	 */
+	@SuppressWarnings("unchecked")
+	Interner() {
+		stripes = new WeakHashMap[STRIPES];
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new WeakHashMap<>();
+		}
+	}
+
+	/**
+	 * Gets the canonical instance equal to value, making one with canonicalize if there isn't one. Nothing is locked
+	 * while canonicalize is called, so it may intern what is in value, and it is only called if no equal instance is
+	 * found. If another thread adds an equal instance first, the one it made is dropped and that one returned.
+	 * @param value The value to find the canonical instance of.
+	 * @param canonicalize Makes the canonical instance from value, a copy of it that nothing else can change.
+	 * @return The instance in this equal to value.
+	 */
+	T intern(T value, UnaryOperator<T> canonicalize) {
+		WeakHashMap<T, WeakReference<T>> stripe = stripeOf(value);
+		T found = find(stripe, value);
+		if(found != null) {
+			hits.increment();
+			return found;
+		}
+		T canonical = canonicalize.apply(value);
+		synchronized(stripe) {
+			found = find(stripe, value);
+			if(found == null) {
+				stripe.put(canonical, new WeakReference<>(canonical));
+			}
+		}
+		if(found != null) {
+			hits.increment();
+			return found;
+		}
+		misses.increment();
+		return canonical;
+	}
+
+	/**
+	 * @param value A value.
+	 * @return The stripe value is kept in.
+	 */
+	private WeakHashMap<T, WeakReference<T>> stripeOf(T value) {
+		int hash = value.hashCode();
+		return stripes[(hash ^ hash >>> 16) & STRIPES - 1];
+	}
+
+	/**
+	 * @param stripe A stripe.
+	 * @param value A value.
+	 * @return The instance in stripe equal to value, or null if there isn't one.
+	 */
+	private static <T> T find(WeakHashMap<T, WeakReference<T>> stripe, T value) {
+		synchronized(stripe) {
+			WeakReference<T> ref = stripe.get(value);
+			return ref == null ? null : ref.get();
+		}
+	}
+
+	/**
+	 * @return The number of canonical instances still in use.
+	 */
+	public int size() {
+		int size = 0;
+		for(WeakHashMap<T, WeakReference<T>> stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return The number of times an equal instance was found.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of times a value became the canonical instance.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The fraction of values which an equal instance was found for, or 0 if nothing has been interned.
+	 */
+	public double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double)hit / total;
+	}
+}
@@ -177,7 +177,7 @@ public class Matrix implements Serializable {
                 inverse = identity(row).matrix;
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
-                matrix[i][j] = this.matrix[i][j].clone();
+                matrix[i][j] = this.matrix[i][j];
             }
         }
         if (matrix.length == 0 || matrix[0].length == 0) {
@@ -261,7 +261,7 @@ public class Matrix implements Serializable {
         Constant[][] matrix = new Constant[row][col];
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
-                matrix[i][j] = this.matrix[i][j].clone();
+                matrix[i][j] = this.matrix[i][j];
             }
         }
         if (matrix.length == 0 || matrix[0].length == 0) {
@@ -372,7 +372,7 @@ public class Matrix implements Serializable {
                 u = new Constant[row][col], p = Matrix.identity(row).matrix;
         for (int i = 0; i < u.length; i++) {
             for (int j = 0; j < u[i].length; j++) {
-                u[i][j] = this.matrix[i][j].clone();
+                u[i][j] = this.matrix[i][j];
             }
         }
         if (u.length == 0 || u[0].length == 0) {
@@ -0,0 +1,597 @@
+package lang;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The variables of a Term and their powers, kept sorted by variable. While every power is an int, which is by far the
+ * most common case, they are packed into a char[] and an int[], so multiplying, comparing and hashing are loops over
+ * arrays rather than walks over a tree of Constants. Once a power is a fraction or too big for an int, every power is
+ * kept as a Constant instead. Works as a Map from each variable to its power, in the same order as the TreeMap it
+ * replaces.
+ *
+ * @author Luke Senseney
+ */
+final class Monomial extends AbstractMap<Character, Constant> implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The variables, sorted, in the first size places.
+	 */
+	private char[] vars;
+	/**
+	 * The power of each variable while every power is an int, else null.
+	 */
+	private int[] powers;
+	/**
+	 * The power of each variable once one isn't an int, else null.
+	 */
+	private Constant[] general;
+	/**
+	 * The number of variables.
+	 */
+	private int size;
+	/**
+	 * The hash, highest power and variables of this, or null if this has changed since they were last found. Monomials
+	 * are shared between threads, so it is only ever replaced whole with one that is already finished.
+	 */
+	private transient volatile Summary summary;
+
+	/**
+	 * Creates a new Monomial with no variables.
+	 */
+	Monomial() {
+		vars = new char[2];
+		powers = new int[2];
+	}
+
+	/**
+	 * Creates a new Monomial with the same variables and powers as a Map.
+	 * @param copy The Map to copy.
+	 */
+	Monomial(Map<Character, Constant> copy) {
+		if(copy instanceof Monomial) {
+			Monomial other = (Monomial)copy;
+			size = other.size;
+			vars = Arrays.copyOf(other.vars, Math.max(size, 2));
+			if(other.general == null) {
+				powers = Arrays.copyOf(other.powers, vars.length);
+			} else {
+				general = Arrays.copyOf(other.general, vars.length);
+			}
+		} else {
+			vars = new char[Math.max(copy.size(), 2)];
+			powers = new int[vars.length];
+			copy.forEach(this::put);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Character && containsVar((Character)key);
+	}
+
+	/**
+	 * @param var A variable.
+	 * @return If var is in this.
+	 */
+	boolean containsVar(char var) {
+		return (summarize().mask & 1L << var) != 0 && indexOf(var) >= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public Constant get(Object key) {
+		if(!(key instanceof Character)) {
+			return null;
+		}
+		int index = indexOf((Character)key);
+		return index < 0 ? null : powerAt(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public Constant put(Character var, Constant power) {
+		int index = indexOf(var);
+		if(index >= 0) {
+			Constant old = powerAt(index);
+			setPower(index, power);
+			return old;
+		}
+		insert(-index - 1, var, power);
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	public Constant remove(Object key) {
+		if(!(key instanceof Character)) {
+			return null;
+		}
+		int index = indexOf((Character)key);
+		if(index < 0) {
+			return null;
+		}
+		Constant old = powerAt(index);
+		removeAt(index);
+		return old;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+		summary = null;
+	}
+
+	/**
+	 * Adds to the power of a variable, adding the variable if it isn't in this. A power of zero is left in this.
+	 * @param var The variable.
+	 * @param power The power to add.
+	 */
+	void addPower(char var, Constant power) {
+		if(general == null && power.isInt()) {
+			addPower(var, power.intValue());
+		} else {
+			Constant old = get(var);
+			put(var, old == null ? power : old.add(power));
+		}
+	}
+
+	/**
+	 * Multiplies another Monomial into this, adding its powers to those of this. Powers of zero are left in this.
+	 * @param other The Monomial to multiply in.
+	 */
+	void multiply(Monomial other) {
+		for(int i = 0; i < other.size; i++) {
+			if(other.general == null && general == null) {
+				addPower(other.vars[i], other.powers[i]);
+			} else {
+				addPower(other.vars[i], other.powerAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Multiplies each power in this by a Constant.
+	 * @param by What to multiply each power by.
+	 */
+	void multiplyPowers(Constant by) {
+		summary = null;
+		if(general == null && by.isInt()) {
+			long times = by.intValue();
+			for(int i = 0; i < size; i++) {
+				long power = powers[i] * times;
+				if(power != (int)power) {
+					// Too big for an int, so finishes with Constants.
+					for(; i < size; i++) {
+						setPower(i, powerAt(i).multiply(by));
+					}
+					return;
+				}
+				powers[i] = (int)power;
+			}
+		} else {
+			for(int i = 0; i < size; i++) {
+				setPower(i, powerAt(i).multiply(by));
+			}
+		}
+	}
+
+	/**
+	 * Removes all variables to the power of zero.
+	 */
+	void removeZeros() {
+		summary = null;
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			if(general == null ? powers[i] != 0 : !general[i].equals(Constant.ZERO)) {
+				vars[kept] = vars[i];
+				if(general == null) {
+					powers[kept] = powers[i];
+				} else {
+					general[kept] = general[i];
+				}
+				kept++;
+			}
+		}
+		if(general != null) {
+			Arrays.fill(general, kept, size, null);
+		}
+		size = kept;
+	}
+
+	/**
+	 * @return The highest power in this, or null if this has no variables.
+	 */
+	Constant maxPower() {
+		return summarize().max;
+	}
+
+	/**
+	 * Finds the summary of this if this has changed since it was last found. Two threads may both find it, but each only
+	 * publishes a finished one.
+	 * @return The summary of this as it is now.
+	 */
+	private Summary summarize() {
+		Summary found = summary;
+		if(found != null) {
+			return found;
+		}
+		// The same as any other Map with these entries.
+		int hash = 0;
+		long mask = 0;
+		for(int i = 0; i < size; i++) {
+			hash += vars[i] ^ powerAt(i).hashCode();
+			mask |= 1L << vars[i];
+		}
+		Constant max;
+		if(size == 0) {
+			max = null;
+		} else if(general == null) {
+			int most = powers[0];
+			for(int i = 1; i < size; i++) {
+				most = Math.max(most, powers[i]);
+			}
+			max = Constant.valueOf(most);
+		} else {
+			max = general[0];
+			for(int i = 1; i < size; i++) {
+				if(general[i].compareTo(max) > 0) {
+					max = general[i];
+				}
+			}
+		}
+		found = new Summary(hash, max, mask);
+		summary = found;
+		return found;
+	}
+
+	/**
+	 * Compares where Terms with these variables go when sorted. The one with the highest power goes first, then the one
+	 * with more variables, then the one whose first differing variable comes first, or whose first differing power is
+	 * lower.
+	 * @param o The Monomial to compare to.
+	 * @return -1 if this goes first, 1 if o goes first, or 0 if they are the same.
+	 */
+	int compareOrder(Monomial o) {
+		if(size == 0) {
+			return o.size == 0 ? 0 : 1;
+		}
+		if(o.size == 0) {
+			return -1;
+		}
+		int compare = maxPower().compareTo(o.maxPower());
+		if(compare != 0) {
+			return compare > 0 ? -1 : 1;
+		}
+		if(size != o.size) {
+			return o.size > size ? 1 : -1;
+		}
+		for(int i = 0; i < size; i++) {
+			if(vars[i] != o.vars[i]) {
+				return vars[i] < o.vars[i] ? -1 : 1;
+			}
+			compare = general == null && o.general == null ? Integer.compare(powers[i], o.powers[i])
+					: powerAt(i).compareTo(o.powerAt(i));
+			if(compare != 0) {
+				return compare < 0 ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof Monomial)) {
+			return super.equals(o);
+		}
+		Monomial other = (Monomial)o;
+		if(size != other.size) {
+			return false;
+		}
+		for(int i = 0; i < size; i++) {
+			if(vars[i] != other.vars[i]) {
+				return false;
+			}
+		}
+		if(general == null && other.general == null) {
+			for(int i = 0; i < size; i++) {
+				if(powers[i] != other.powers[i]) {
+					return false;
+				}
+			}
+		} else {
+			for(int i = 0; i < size; i++) {
+				if(!powerAt(i).equals(other.powerAt(i))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return summarize().hash;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Entry<Character, Constant>> entrySet() {
+		return new AbstractSet<Entry<Character, Constant>>() {
+			@Override
+			public Iterator<Entry<Character, Constant>> iterator() {
+				return new Iterator<Entry<Character, Constant>>() {
+					/**
+					 * The index of the next entry.
+					 */
+					private int next = 0;
+					/**
+					 * If the last entry given can be removed.
+					 */
+					private boolean canRemove = false;
+
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					@Override
+					public Entry<Character, Constant> next() {
+						if(next >= size) {
+							throw new NoSuchElementException();
+						}
+						canRemove = true;
+						return new PowerEntry(next++);
+					}
+
+					@Override
+					public void remove() {
+						if(!canRemove) {
+							throw new IllegalStateException();
+						}
+						canRemove = false;
+						removeAt(--next);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Finds a variable.
+	 * @param var The variable to find.
+	 * @return The index of var, or -(where it would be inserted) - 1 if it isn't in this.
+	 */
+	private int indexOf(char var) {
+		return Arrays.binarySearch(vars, 0, size, var);
+	}
+
+	/**
+	 * @param index The index of a variable.
+	 * @return The power of the variable at index.
+	 */
+	private Constant powerAt(int index) {
+		return general == null ? Constant.valueOf(powers[index]) : general[index];
+	}
+
+	/**
+	 * Sets the power of the variable at an index, switching to Constants if it isn't an int.
+	 * @param index The index of the variable.
+	 * @param power The new power.
+	 */
+	private void setPower(int index, Constant power) {
+		summary = null;
+		if(general == null) {
+			if(power.isInt()) {
+				powers[index] = power.intValue();
+				return;
+			}
+			toGeneral();
+		}
+		general[index] = power;
+	}
+
+	/**
+	 * Adds to the power of a variable while every power is an int, adding the variable if it isn't in this.
+	 * @param var The variable.
+	 * @param power The power to add.
+	 */
+	private void addPower(char var, int power) {
+		summary = null;
+		int index = indexOf(var);
+		if(index < 0) {
+			insert(-index - 1, var, Constant.valueOf(power));
+			return;
+		}
+		long sum = (long)powers[index] + power;
+		if(sum == (int)sum) {
+			powers[index] = (int)sum;
+		} else {
+			setPower(index, Constant.valueOf(sum));
+		}
+	}
+
+	/**
+	 * Adds a variable that isn't in this.
+	 * @param index Where the variable goes.
+	 * @param var The variable.
+	 * @param power The power of the variable.
+	 */
+	private void insert(int index, char var, Constant power) {
+		if(size == vars.length) {
+			vars = Arrays.copyOf(vars, size * 2);
+			if(general == null) {
+				powers = Arrays.copyOf(powers, size * 2);
+			} else {
+				general = Arrays.copyOf(general, size * 2);
+			}
+		}
+		System.arraycopy(vars, index, vars, index + 1, size - index);
+		if(general == null) {
+			System.arraycopy(powers, index, powers, index + 1, size - index);
+		} else {
+			System.arraycopy(general, index, general, index + 1, size - index);
+		}
+		vars[index] = var;
+		size++;
+		setPower(index, power);
+	}
+
+	/**
+	 * Removes the variable at an index.
+	 * @param index The index of the variable.
+	 */
+	private void removeAt(int index) {
+		System.arraycopy(vars, index + 1, vars, index, size - index - 1);
+		if(general == null) {
+			System.arraycopy(powers, index + 1, powers, index, size - index - 1);
+		} else {
+			System.arraycopy(general, index + 1, general, index, size - index - 1);
+			general[size - 1] = null;
+		}
+		size--;
+		summary = null;
+	}
+
+	/**
+	 * Switches from keeping the powers as ints to keeping them as Constants.
+	 */
+	private void toGeneral() {
+		general = new Constant[vars.length];
+		for(int i = 0; i < size; i++) {
+			general[i] = Constant.valueOf(powers[i]);
+		}
+		powers = null;
+	}
+
+	/**
+	 * An entry of this, which changes this when its value is set.
+	 */
+	private final class PowerEntry implements Entry<Character, Constant> {
+		/**
+		 * The index of the variable.
+		 */
+		private final int index;
+
+		/**
+		 * @param index The index of the variable.
+		 */
+		PowerEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Character getKey() {
+			return vars[index];
+		}
+
+		@Override
+		public Constant getValue() {
+			return powerAt(index);
+		}
+
+		@Override
+		public Constant setValue(Constant value) {
+			Constant old = powerAt(index);
+			setPower(index, value);
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> e = (Entry<?, ?>)o;
+			return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ getValue().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * What is worked out once about a Monomial and kept until it changes. Never changed once made, so it can be shared
+	 * between threads.
+	 */
+	private static final class Summary {
+		/**
+		 * The hash code of the Monomial.
+		 */
+		final int hash;
+		/**
+		 * The highest power in the Monomial, or null if it has no variables.
+		 */
+		final Constant max;
+		/**
+		 * The bit (var mod 64) is set for each variable in the Monomial, to quickly rule out variables.
+		 */
+		final long mask;
+
+		/**
+		 * @param hash The hash code of the Monomial.
+		 * @param max The highest power in the Monomial, or null if it has no variables.
+		 * @param mask The bit (var mod 64) set for each variable in the Monomial.
+		 */
+		Summary(int hash, Constant max, long mask) {
+			this.hash = hash;
+			this.max = max;
+			this.mask = mask;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package lang;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * A cache of parsed Expressions, for when the same Strings are read over and over. Strings that only differ in white
+ * space share an entry. Holds at most a set number of entries and roughly a set number of bytes, removing the least
+ * recently used entries when either would be passed. The Expressions returned are copies, so they may be changed
+ * without changing the cache. Strings read under a different {@link ExpansionPolicy} have separate entries. Safe to use
+ * from multiple threads.
+ *
+ * @author Luke Senseney
+ */
+public class ParseCache {
+	/**
+	 * Rough number of bytes used by an entry, not counting its String or Expression.
+	 */
+	private static final int ENTRY_BYTES = 64;
+	/**
+	 * Rough number of bytes used by a Term, not counting anything in its undistr.
+	 */
+	private static final int TERM_BYTES = 256;
+	/**
+	 * The most entries this will hold.
+	 */
+	private final int maxEntries;
+	/**
+	 * The most bytes this will hold, by the estimate of estimateBytes.
+	 */
+	private final long maxBytes;
+	/**
+	 * The parsed Expressions, by their String with white space removed after the key of the expansion policy they were
+	 * read with, from least to most recently used.
+	 */
+	private final LinkedHashMap<String, Expression> cache = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * The estimated bytes held by cache.
+	 */
+	private long bytes = 0;
+	/**
+	 * Number of Strings found in the cache.
+	 */
+	private long hits = 0;
+	/**
+	 * Number of Strings not found in the cache.
+	 */
+	private long misses = 0;
+	/**
+	 * Number of entries removed to stay under the limits.
+	 */
+	private long evictions = 0;
+
+	/**
+	 * Creates a new empty ParseCache.
+	 * @param maxEntries The most entries the cache will hold.
+	 * @param maxBytes Roughly the most bytes the cache will hold.
+	 * @throws IllegalArgumentException If maxEntries or maxBytes isn't positive.
+	 */
+	public ParseCache(int maxEntries, long maxBytes) {
+		if(maxEntries <= 0 || maxBytes <= 0) {
+			throw new IllegalArgumentException("A ParseCache must be able to hold at least one entry.");
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Reads a String the same way as {@link Expression#Expression(String)}, using the cached Expression if this String,
+	 * ignoring white space, has been read before.
+	 * @param expression The String to read.
+	 * @return A copy of the Expression represented by expression.
+	 * @throws MathFormatException If expression is not formatted correctly. These are not cached.
+	 */
+	public Expression parse(String expression) throws MathFormatException {
+		String stripped = Expression.WHITE_SPACE.matcher(expression).replaceAll("");
+		String key = Expression.expansionKey() + stripped;
+		synchronized(this) {
+			Expression cached = cache.get(key);
+			if(cached != null) {
+				hits++;
+				return cached.clone();
+			}
+			misses++;
+		}
+		// Parses outside of the lock so other threads can use the cache meanwhile. If two threads parse the same String
+		// at once, the second to finish replaces the first's entry.
+		Expression parsed = new Expression(stripped);
+		long size = estimateBytes(key, parsed);
+		synchronized(this) {
+			Expression old = cache.put(key, parsed.clone());
+			if(old != null) {
+				bytes -= estimateBytes(key, old);
+			}
+			bytes += size;
+			// Removes the least recently used entries until this is under both limits. Keeps the new entry even if it
+			// alone is over maxBytes, so the cache is never left empty right after a miss.
+			Iterator<Entry<String, Expression>> iter = cache.entrySet().iterator();
+			while((cache.size() > maxEntries || bytes > maxBytes) && cache.size() > 1) {
+				Entry<String, Expression> eldest = iter.next();
+				bytes -= estimateBytes(eldest.getKey(), eldest.getValue());
+				iter.remove();
+				evictions++;
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Removes all entries from this. Does not reset the counts of hits, misses and evictions.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return The number of Strings currently cached.
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return The estimated number of bytes held by this.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return The number of times parse found its String in this.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of times parse had to read its String.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return The number of entries removed to stay under the limits.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Estimates the bytes used by an entry.
+	 * @param key The String of the entry.
+	 * @param value The Expression of the entry.
+	 * @return The rough number of bytes used.
+	 */
+	private static long estimateBytes(String key, Expression value) {
+		return ENTRY_BYTES + 2L * key.length() + estimateBytes(value);
+	}
+
+	/**
+	 * Estimates the bytes used by an Expression, counting each of its Terms and everything in their undistr.
+	 * @param value The Expression to estimate.
+	 * @return The rough number of bytes used.
+	 */
+	private static long estimateBytes(Expression value) {
+		long size = 0;
+		for(Term current : value.terms) {
+			size += TERM_BYTES;
+			for(Entry<Expression, Expression> un : current.undistr.entrySet()) {
+				size += estimateBytes(un.getKey()) + estimateBytes(un.getValue());
+			}
+		}
+		return size;
+	}
+}
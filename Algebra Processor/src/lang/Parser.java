@@ -0,0 +1,278 @@
+package lang;
+
+import java.util.ArrayList;
+
+/**
+ * Reads Strings into Terms and Expressions in a single pass from left to right. Each parenthesis is read by recursing
+ * into it, so the time taken grows linearly with the length of the String no matter how deeply it is nested. Reads
+ * the grammar:
+ * <pre>
+ * expression := term*
+ * term       := ('+' | '-')* factor (('*' | '/')? '-'? factor)*
+ * factor     := atom ('^' '-'? atom)*
+ * atom       := number | variable | '(' expression ')'
+ * </pre>
+ * The String given should already have its white space removed and the imaginary unit and e replaced with
+ * Term.interImag and Term.interE.
+ *
+ * @author Luke Senseney
+ */
+class Parser {
+	/**
+	 * The most parentheses that may be nested inside each other. Each is read by recursing, so deeper nesting would run
+	 * out of stack.
+	 */
+	static final int MAX_DEPTH = 256;
+	/**
+	 * The String being read.
+	 */
+	private final String s;
+	/**
+	 * The index of the next character to be read.
+	 */
+	private int pos = 0;
+	/**
+	 * The number of parentheses the next character is inside.
+	 */
+	private int depth = 0;
+
+	/**
+	 * Creates a new Parser for a String.
+	 * @param s The String to read.
+	 */
+	Parser(String s) {
+		this.s = s;
+	}
+
+	/**
+	 * Reads the whole String as the sum of Terms. The Terms are not combined or simplified with each other.
+	 * @return The Terms in the String.
+	 * @throws MathFormatException If the String is not formatted correctly.
+	 */
+	ArrayList<Term> parseTerms() throws MathFormatException {
+		ArrayList<Term> terms = readTerms();
+		if(pos < s.length()) {
+			throw new MathFormatException("There is an unmatched close parenthese.");
+		}
+		return terms;
+	}
+
+	/**
+	 * Reads the whole String as a single Term.
+	 * @return The Term in the String.
+	 * @throws MathFormatException If the String is not formatted correctly or is more than one Term.
+	 */
+	Term parseTerm() throws MathFormatException {
+		Term term = readTerm();
+		if(pos < s.length()) {
+			if(s.charAt(pos) == ')') {
+				throw new MathFormatException("There is an unmatched close parenthese.");
+			}
+			throw new MathFormatException(s + " is not a single term.");
+		}
+		return term;
+	}
+
+	/**
+	 * Reads Terms until the end of the String or a close parenthese.
+	 * @return The Terms read.
+	 */
+	private ArrayList<Term> readTerms() {
+		ArrayList<Term> terms = new ArrayList<>();
+		while(pos < s.length() && s.charAt(pos) != ')') {
+			terms.add(readTerm());
+		}
+		return terms;
+	}
+
+	/**
+	 * Reads a single Term, stopping at the "+" or "-" that starts the next one, a close parenthese, or the end.
+	 * @return The Term read, simplified.
+	 */
+	private Term readTerm() {
+		Term term = new Term(Constant.ONE);
+		// Counts the signs in front of the term.
+		int neg = 0;
+		for(; pos < s.length() && (s.charAt(pos) == '-' || s.charAt(pos) == '+'); pos++) {
+			if(s.charAt(pos) == '-') {
+				neg++;
+			}
+		}
+		if(neg % 2 == 1) {
+			term.coeff = Constant.NEGATE;
+		}
+		boolean inverse = false;
+		while(true) {
+			Atom base = readAtom();
+			ArrayList<Atom> expos = new ArrayList<>();
+			while(pos < s.length() && s.charAt(pos) == '^') {
+				pos++;
+				boolean negative = pos < s.length() && s.charAt(pos) == '-';
+				if(negative) {
+					pos++;
+				}
+				Atom expo = readAtom();
+				expo.negative = negative;
+				expos.add(expo);
+			}
+			multiply(term, base, expos, inverse);
+			if(pos == s.length() || s.charAt(pos) == '+' || s.charAt(pos) == '-' || s.charAt(pos) == ')') {
+				break;
+			}
+			// Reads the operator between this factor and the next, if there is one, and a minus sign after it.
+			inverse = s.charAt(pos) == '/';
+			if(inverse || s.charAt(pos) == '*') {
+				pos++;
+				if(pos < s.length() && s.charAt(pos) == '-') {
+					term.coeff = term.coeff.negate();
+					pos++;
+				}
+			}
+		}
+		term.simplifyTerm();
+		return term;
+	}
+
+	/**
+	 * Reads a number, a variable, or an Expression in parentheses.
+	 * @return What was read.
+	 * @throws MathFormatException If there is no number, variable or parenthese where one was expected, or parentheses
+	 * are nested more than MAX_DEPTH deep.
+	 */
+	private Atom readAtom() throws MathFormatException {
+		if(pos == s.length()) {
+			throw new MathFormatException(s + " is not formatted correctly.");
+		}
+		Atom atom = new Atom();
+		char c = s.charAt(pos);
+		if(isNumber(c)) {
+			int start = pos;
+			while(pos < s.length() && isNumber(s.charAt(pos))) {
+				pos++;
+			}
+			try {
+				atom.number = Constant.valueOf(s, start, pos);
+			} catch(NumberFormatException e) {
+				throw new MathFormatException(s.substring(start, pos) + " is not a number.", e);
+			}
+		} else if(c == '(') {
+			if(++depth > MAX_DEPTH) {
+				throw new MathFormatException("Parentheses are nested more than " + MAX_DEPTH + " deep.");
+			}
+			pos++;
+			ArrayList<Term> terms = readTerms();
+			if(pos == s.length()) {
+				throw new MathFormatException("There is an unmatched start parenthese.");
+			}
+			pos++;
+			depth--;
+			atom.paren = new Expression(terms);
+		} else if(c == ')' || c == '^' || c == '*' || c == '/' || c == '+' || c == '-' || c == '=') {
+			throw new MathFormatException(s + " is not formatted correctly.");
+		} else {
+			pos++;
+			atom.var = c;
+		}
+		return atom;
+	}
+
+	/**
+	 * @param c A character.
+	 * @return If c can be part of a number, a digit or a decimal point.
+	 */
+	private static boolean isNumber(char c) {
+		return c >= '0' && c <= '9' || c == '.';
+	}
+
+	/**
+	 * Multiplies a factor into a Term, or divides the Term by it if inverse is true.
+	 * @param term The Term to multiply into.
+	 * @param base The base of the factor.
+	 * @param expos The chain of exponents on base, from left to right.
+	 * @param inverse If true, term is divided by the factor instead.
+	 */
+	private static void multiply(Term term, Atom base, ArrayList<Atom> expos, boolean inverse) {
+		if(expos.isEmpty()) {
+			if(base.number != null) {
+				term.coeff = term.coeff.multiply(inverse ? base.number.invert() : base.number);
+			} else if(base.paren != null) {
+				term.addExponent(base.paren, (inverse ? Expression.NEGATIVE : Expression.ONE).clone());
+			} else {
+				term.addExponent(base.var, inverse ? Constant.NEGATE : Constant.ONE);
+			}
+			return;
+		}
+		// Works from the top of the exponent chain down. While the powers are all numbers they are kept in pow, once
+		// one isn't, pow is null and the power is kept in power.
+		Constant pow = Constant.ONE;
+		Expression power = Expression.ONE.clone();
+		for(int i = expos.size() - 1; i > -1; i--) {
+			Atom cur = expos.get(i);
+			if(cur.number != null) {
+				if(pow != null) {
+					pow = cur.number.raise(pow);
+					if(cur.negative) {
+						pow = pow.negate();
+					}
+				} else {
+					power = new Expression(cur.number).raise(power);
+					if(cur.negative) {
+						power = power.negate();
+					}
+				}
+			} else {
+				Expression p = cur.paren != null ? cur.paren : new Expression(cur.var);
+				if(pow != null) {
+					power = p.raise(pow);
+					pow = null;
+				} else {
+					power = p.raise(power);
+				}
+				if(cur.negative) {
+					power = power.negate();
+				}
+			}
+		}
+		if(pow != null) {
+			pow = inverse ? pow.negate() : pow;
+			if(base.number != null) {
+				term.coeff = term.coeff.multiply(base.number.raise(pow));
+			} else if(base.paren != null) {
+				term.addExponent(base.paren, new Expression(pow));
+			} else {
+				term.addExponent(base.var, pow);
+			}
+		} else {
+			power = inverse ? power.negate() : power;
+			if(base.number != null) {
+				term.addExponent(new Expression(base.number), power);
+			} else if(base.paren != null) {
+				term.addExponent(base.paren, power);
+			} else {
+				term.addExponent(new Expression(base.var), power);
+			}
+		}
+	}
+
+	/**
+	 * A single number, variable or Expression in parentheses that was read. Only one of number, var, and paren is set.
+	 */
+	private static class Atom {
+		/**
+		 * The number read, or null if it wasn't a number.
+		 */
+		Constant number;
+		/**
+		 * The variable read.
+		 */
+		char var;
+		/**
+		 * The Expression in parentheses that was read, or null if it wasn't in parentheses.
+		 */
+		Expression paren;
+		/**
+		 * If this is an exponent, if it had a minus sign in front of it.
+		 */
+		boolean negative;
+	}
+}
@@ -1,9 +1,14 @@
 package lang;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Class that represents all solutions for a variable.
@@ -80,6 +85,57 @@ public class Solution implements Serializable {
         return false;
     }
 	
+	/**
+	 * Replaces variables in each value of this. An equation with parameters, such as ax^2+bx+c=0, can be solved once
+	 * and then have its parameters replaced for each instance, rather than being solved again.
+	 * @param params The Expression to replace each variable with.
+	 * @return A Solution for the same variable with the variables replaced in each value.
+	 */
+	public Solution substitute(Map<Character, Expression> params) {
+		Solution retrn = new Solution(letter);
+		for(Expression current : value) {
+			retrn.value.add(current.substitute(params));
+		}
+		retrn.allPossible = allPossible;
+		return retrn;
+	}
+
+	/**
+	 * Compiles each value of this into a function of the variables in it, as {@link Expression#compile(char...)}.
+	 * @param params The variables in the values, in the order their values will be given.
+	 * @return The function for each value, sorted by value.
+	 * @throws NotEvaluatable If a value can't be compiled.
+	 */
+	public SortedMap<Expression, ToDoubleFunction<double[]>> compile(char... params) throws NotEvaluatable {
+		SortedMap<Expression, ToDoubleFunction<double[]>> retrn = new TreeMap<>();
+		for(Expression current : value) {
+			retrn.put(current, current.compile(params));
+		}
+		return retrn;
+	}
+
+	/**
+	 * Evaluates each value of this with doubles, for many values of the variables in it. The values are compiled once,
+	 * so each evaluation is only arithmetic. A value which isn't real, such as when a quadratic has no real roots, is
+	 * NaN.
+	 * @param params The variables in the values.
+	 * @param tuples Values of params, each in the same order as params.
+	 * @return For each tuple, the real part of each value of this at it, in the order the values are sorted.
+	 * @throws NotEvaluatable If a value can't be compiled.
+	 */
+	public double[][] evaluate(char[] params, double[][] tuples) throws NotEvaluatable {
+		Collection<ToDoubleFunction<double[]>> compiled = compile(params).values();
+		double[][] retrn = new double[tuples.length][];
+		for(int i = 0; i < tuples.length; i++) {
+			retrn[i] = new double[compiled.size()];
+			int j = 0;
+			for(ToDoubleFunction<double[]> current : compiled) {
+				retrn[i][j++] = current.applyAsDouble(tuples[i]);
+			}
+		}
+		return retrn;
+	}
+
 	/**
 	 * @param places decimal places to round to.
 	 * @return A String representation of this with decimals rounded to places rather than fractions and \u03c0,
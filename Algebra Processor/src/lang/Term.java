@@ -11,17 +11,20 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Class representing a mathematical term.
+ * Class representing a mathematical term. Once a Term has been made and handed out it is never changed, so Terms and
+ * the Expressions in their undistr are shared between results rather than copied. Anything that needs to change a
+ * Term changes a clone() of it, which copies only the maps and not the Expressions in them.
  * 
  * @author Luke Senseney
  */
 public class Term implements Comparable<Term>, Serializable {
 	private static final long serialVersionUID = 1L;
+	/**
+	 * The canonical instances of Terms that have been interned.
+	 */
+	private static final Interner<Term> INTERNED = new Interner<>();
 	/**
 	 * The coefficient of the Term.
 	 */
@@ -29,16 +32,24 @@ public class Term implements Comparable<Term>, Serializable {
 	/**
 	 * A Map of variables and their powers in it. Each key is raised to its value and multiplied into this.
 	 */
-	TreeMap<Character, Constant> vars;
+	Monomial vars;
 	/**
 	 * A Map to represent things which can't be distributed, such as (x+3)^(1/2), each key is raised to its 
 	 * value and then multiplied into this.
 	 */
 	TreeMap<Expression, Expression> undistr;
+	/**
+	 * If this is the canonical instance in INTERNED, so is only equal to other canonical Terms if it is the same Term.
+	 */
+	transient boolean interned = false;
+	/**
+	 * The hash code of this once it has been found, if this is interned and so can't change. 0 if it hasn't been found.
+	 */
+	private transient int hash = 0;
 	/**
 	 * Term with no Variables, and a coefficient of -1.
 	 */
-	public static Term NEGATE = new Term(Constant.NEGATE);
+	public static final Term NEGATE = new Term(Constant.NEGATE);
 	/**
 	 * The character to use for \u03c0.
 	 */
@@ -61,172 +72,31 @@ public class Term implements Comparable<Term>, Serializable {
 	final static char interE = '\u05d1';
 	// public HashSet<Expression> restrictions = new HashSet<>();
 
-	/**
-	 * Used to find the level of parentheses in a String representing a term. Also checks that this term is
-	 * formatted correctly.
-	 * @param term The String to find the level of parentheses in.
-	 * @return The levels of parentheses in term.
-	 * @throws MathFormatException If term is not formatted correctly.
-	 */
-	private static int findLevel(String term) throws MathFormatException {
-		// Finds out how many levels of parentheses are in this equation, throwing errors if parentheses don't match.
-		int inParen = 0;
-		int max = 0;
-		for(char c : term.toCharArray()) {
-			if(c == '(') {
-				inParen++;
-				if(inParen > max) {
-					max = inParen;
-				}
-			} else if(c == ')') {
-				inParen--;
-				if(inParen < 0) {
-					throw new MathFormatException("There is an unmatched close parenthese.");
-				}
-			}
-		}
-		if(inParen != 0) {
-			throw new MathFormatException("There is an unmatched start parenthese.");
-		}
-		return max;
-	}
-	
 	/**
 	 * Creates a new Term from a String. Garbage in, Garbage out; if the String is not a correctly
 	 * formated Term, will attempt to read. Cannot read \u221a, use ^(1/2).
 	 * @param newTerm the String to make a Term from.
+	 * @throws MathFormatException If newTerm is not formatted correctly.
 	 */
-	public Term(String newTerm) {
-		this(newTerm, findLevel(newTerm));
+	public Term(String newTerm) throws MathFormatException {
+		this(Constant.ONE);
+		Term parsed = new Parser(newTerm.replace(IMAG_UNIT, String.valueOf(interImag))
+				.replace(E, String.valueOf(interE))).parseTerm();
+		coeff = parsed.coeff;
+		vars = parsed.vars;
+		undistr = parsed.undistr;
 	}
 
 	/**
 	 * Creates a new term from newTerm, when the levels of parentheses are known.
 	 * @param newTerm The String to be turned into a term.
-	 * @param findLevel The level of parentheses in newTerm.
-	 * @throws MathFormatException If newTerm is not formatted correctly or findLevel is lower than the level of parentheses.
+	 * @param level The level of parentheses in newTerm. No longer used, the parser finds the parentheses itself.
+	 * @throws MathFormatException If newTerm is not formatted correctly.
+	 * @deprecated Use {@link #Term(String)}.
 	 */
+	@Deprecated
 	public Term(String newTerm, int level) throws MathFormatException {
-		this(Constant.ONE);
-		newTerm = newTerm.replace(IMAG_UNIT, String.valueOf(interImag));
-		newTerm = newTerm.replace(E, String.valueOf(interE));
-		int neg = 0, i = 0;
-		for(; newTerm.charAt(i) == '-' || newTerm.charAt(i) == '+'; i++) {
-			if(newTerm.charAt(i) == '-') {
-				neg++;
-			}
-		}
-		if(neg % 2 == 1) {
-			coeff = Constant.NEGATE;
-		}
-		newTerm = newTerm.substring(i);
-		String number = "[\\d\\.]+";
-		String var = "[^\\d\\.()\\^]";
-		Pattern b = Pattern.compile("(" + number + ")|(" + var + ")|(" + ParenthesesManager.getParen(level) + ")");
-		Matcher m = b.matcher(newTerm);
-		boolean inverse = false;
-		try {
-			while(m.lookingAt()) {
-				MatchResult base = m.toMatchResult();
-				m.region(m.end(), newTerm.length());
-				m.usePattern(Pattern.compile("\\^-?(?:(" + number + ")|(" + var + ")|(" + ParenthesesManager.getParen(level)
-					+ "))"));
-				ArrayList<MatchResult> expos = new ArrayList<>();
-				while(m.lookingAt()) {
-					expos.add(m.toMatchResult());
-					m.region(m.end(), newTerm.length());
-				}
-				if(expos.isEmpty()) {
-					if(base.group(1) != null) {
-						coeff = coeff.multiply(inverse ? Constant.valueOf(base.group(1)).invert()
-								: Constant.valueOf(base.group(1)));
-					} else if(base.group(2) != null) {
-						addExponent(base.group(2).charAt(0), inverse ? Constant.NEGATE : Constant.ONE);
-					} else {
-						String paren = base.group(3);
-						paren = paren.substring(1, paren.length() - 1);
-						undistr.put(new Expression(paren), (inverse ? Expression.NEGATIVE : Expression.ONE).clone());
-					}
-				} else {
-					Constant pow = Constant.ONE;
-					Expression power = Expression.ONE.clone();
-					for(i = expos.size() - 1; i > -1; i--) {
-						MatchResult cur = expos.get(i);
-						boolean negative = cur.group().charAt(1) == '-';
-						if(cur.group(1) != null) {
-							Constant p = Constant.valueOf(cur.group(1));
-							if(pow != null) {
-								pow = p.raise(pow);
-								if(negative) {
-									pow = pow.negate();
-								}
-							} else {
-								power = new Expression(p).raise(power);
-								if(negative) {
-									power = power.negate();
-								}
-							}
-						} else {
-							Expression p;
-							if(cur.group(2) != null) {
-								p = new Expression(cur.group(2).charAt(0));
-							} else {
-								String paren = cur.group(3);
-								paren.substring(1, paren.length() - 1);
-								p = new Expression(paren);
-							}
-							if(pow != null) {
-								power = p.raise(pow);
-								pow = null;
-							} else {
-								power = p.raise(power);
-							}
-							if(negative) {
-								power = power.negate();
-							}
-						}
-					}
-					if(pow != null) {
-						if(base.group(1) != null) {
-							coeff = coeff.multiply(Constant.valueOf(base.group(1)).raise(inverse ? pow.negate() : pow));
-						} else if(base.group(2) != null) {
-							vars.put(base.group(2).charAt(0), inverse ? pow.negate() : pow);
-						} else {
-							String paren = base.group(3);
-							paren = paren.substring(1, paren.length() - 1);
-							undistr.put(new Expression(paren), new Expression(inverse ? pow.negate() : pow));
-						}
-					} else {
-						if(base.group(1) != null) {
-							undistr.put(new Expression(Constant.valueOf(base.group(1))), inverse ? power.negate() : power);
-						} else if(base.group(2) != null) {
-							undistr.put(new Expression(base.group(2).charAt(0)), inverse ? power.negate() : power);
-						} else {
-							undistr.put(new Expression(base.group(3)), inverse ? power.negate() : power);
-						}
-					}
-				}
-				if(!m.hitEnd()) {
-					if(newTerm.charAt(m.regionStart()) == '*') {
-						m.region(m.regionStart() + 1, m.regionEnd());
-						inverse = false;
-					} else if(newTerm.charAt(m.regionStart()) == '/') {
-						m.region(m.regionStart() + 1, m.regionEnd());
-						inverse = true;
-					} else {
-						inverse = false;
-					}
-					if(newTerm.charAt(m.regionStart()) == '-') {
-						coeff = coeff.negate();
-						m.region(m.regionStart() + 1, m.regionEnd());
-					}
-				}
-				m.usePattern(b);
-			}
-			simplifyTerm();
-		} catch(IllegalStateException e) {
-			throw new MathFormatException(newTerm + " is not formatted correctly.");
-		}
+		this(newTerm);
 	}
 
 	/**
@@ -238,6 +108,23 @@ public class Term implements Comparable<Term>, Serializable {
 		this(newCoeff, newVars, new TreeMap<>());
 	}
 
+	/**
+	 * Creates a new Term from variables and a Constant, without copying or simplifying them.
+	 * @param newVars The variables of the Term, which become owned by it.
+	 * @param newCoeff The coefficient of the Term.
+	 */
+	Term(Monomial newVars, Constant newCoeff) {
+		coeff = newCoeff;
+		vars = newVars;
+		undistr = new TreeMap<>();
+	}
+
+	/**
+	 * Creates a Term with nothing set, for withCoeff() to fill in.
+	 */
+	private Term() {
+	}
+
 	/**
 	 * Creates a new Term from a Constant.
 	 * @param newCoeff the Constant that becomes the coefficient of the new Term.
@@ -245,7 +132,7 @@ public class Term implements Comparable<Term>, Serializable {
 	public Term(Constant newCoeff) {
 		coeff = newCoeff;
 		undistr = new TreeMap<>();
-		vars = new TreeMap<>();
+		vars = new Monomial();
 	}
 
 	/**
@@ -256,8 +143,9 @@ public class Term implements Comparable<Term>, Serializable {
 	 */
 	public Term(Constant newCoeff, Map<Character, Constant> newVars, Map<Expression, Expression> newUndistr) {
 		coeff = newCoeff;
-		vars = new TreeMap<>(newVars);
-		undistr = new TreeMap<>(newUndistr);
+		vars = new Monomial(newVars);
+		undistr = new TreeMap<>();
+		newUndistr.forEach(this::addExponent);
 		simplifyTerm();
 	}
 
@@ -273,6 +161,9 @@ public class Term implements Comparable<Term>, Serializable {
 	 * Combines variables and bases that are the same and adds powers of these.
 	 */
 	public void simplifyTerm() {
+		if(interned) {
+			throw new UnsupportedOperationException("An interned Term can't be changed.");
+		}
 		// Finds any entries in undistr that are a single Term raised to a Constant, and multiplies them into this.
 		// Term to be multiplied into this.
 		Term toBe = new Term(new Constant(1));
@@ -300,38 +191,41 @@ public class Term implements Comparable<Term>, Serializable {
 			vars = toBe.vars;
 			undistr = toBe.undistr;
 		}
-		// Looks in the coeff to see if any (-1)^(1/2) can be turned in to i.
-		Constant inRoot = coeff.getRoots().get(new Constant(2));
+		// Looks in the coeff to see if any (-1)^(1/2) can be turned in to i. Makes a new coeff rather than changing the
+		// root, which may be shared with other Constants.
+		Constant inRoot = coeff.getRoots().get(2);
 		if(inRoot != null && inRoot.getNumerator().compareTo(BigInteger.ZERO) < 0) {
-			inRoot.setNumerator(inRoot.getNumerator().negate());
+			TreeMap<Integer, Constant> roots = new TreeMap<>(coeff.getRoots());
+			roots.put(2, inRoot.negate());
+			coeff = new Constant(coeff.getNumerator(), coeff.getDenominator(), roots);
 			addExponent(interImag, Constant.ONE);
 		}
-		// Looks at the power of i for anything that can be simplified. i.e. takes i^2 and turns it to -1.
+		// Looks at the power of i for anything that can be simplified. i.e. takes i^2 and turns it to -1. Replaces the power
+		// rather than changing it, as it may be shared, such as Constant.ONE.
 		Constant imaginary = vars.get(interImag);
 		if(imaginary != null) {
 			switch(imaginary.getNumerator().mod(BigInteger.valueOf(4)).intValue()) {
 				case 0:
-					imaginary.setNumerator(BigInteger.ZERO);
+					vars.remove(interImag);
 					break;
 				case 1:
-					imaginary.setNumerator(BigInteger.ONE);
+					vars.put(interImag, new Constant(BigInteger.ONE, imaginary.getDenominator()));
 					break;
 				case 2:
-					imaginary.setNumerator(BigInteger.ZERO);
+					vars.remove(interImag);
 					coeff = coeff.negate();
 					break;
 				case 3:
-					imaginary.setNumerator(BigInteger.ONE);
+					vars.put(interImag, new Constant(BigInteger.ONE, imaginary.getDenominator()));
 					coeff = coeff.negate();
 			}
 		}
-		Collection<Constant> values = vars.values();
 		// Removes any variables to the 0th power.
-		while(values.remove(new Constant()));
+		vars.removeZeros();
 		// If this contains a zero base in undistr, sets it to 0
 		if(undistr.containsKey(Expression.ZERO)) {
 			coeff = new Constant();
-			vars = new TreeMap<>();
+			vars = new Monomial();
 			undistr = new TreeMap<>();
 		}
 	}
@@ -343,7 +237,15 @@ public class Term implements Comparable<Term>, Serializable {
 	 * @return If the Terms are like, true, else false.
 	 */
 	public static boolean isLikeTerm(Term a, Term b) {
-		return a.vars.equals(b.vars) && a.undistr.equals(b.undistr) && a.coeff.getRoots().equals(b.coeff.getRoots());
+		return a.coeff.hasSameRoots(b.coeff) && a.vars.equals(b.vars) && a.undistr.equals(b.undistr);
+	}
+
+	/**
+	 * @return A key that equals the key of exactly the Terms that are like this, for finding like Terms in a HashMap.
+	 * The key is only valid until the vars, undistr, or roots of the coeff of this are changed.
+	 */
+	LikeKey likeKey() {
+		return new LikeKey(this);
 	}
 
 	/**
@@ -352,7 +254,7 @@ public class Term implements Comparable<Term>, Serializable {
 	 * @param exponent The exponent to be added to var.
 	 */
 	void addExponent(char var, Constant exponent) {
-		vars.merge(var, exponent, Constant::add);
+		vars.addPower(var, exponent);
 	}
 
 	/**
@@ -370,7 +272,7 @@ public class Term implements Comparable<Term>, Serializable {
 	 */
 	void addExponent(Map<Expression, Expression> toAdd) {
 		for(Entry<Expression, Expression> current : toAdd.entrySet()) {
-			addExponent(current.getKey().clone(), current.getValue().clone());
+			addExponent(current.getKey(), current.getValue());
 		}
 		simplifyTerm();
 	}
@@ -380,8 +282,12 @@ public class Term implements Comparable<Term>, Serializable {
 	 * @param toAdd values to be added.
 	 */
 	void addExponents(Map<Character, Constant> toAdd) {
-		for(Entry<Character, Constant> current : toAdd.entrySet()) {
-			addExponent(current.getKey(), current.getValue().clone());
+		if(toAdd instanceof Monomial) {
+			vars.multiply((Monomial)toAdd);
+		} else {
+			for(Entry<Character, Constant> current : toAdd.entrySet()) {
+				addExponent(current.getKey(), current.getValue());
+			}
 		}
 		simplifyTerm();
 	}
@@ -473,6 +379,9 @@ public class Term implements Comparable<Term>, Serializable {
 	public boolean equals(Object other) {
 		if(other instanceof Term) {
 			Term a = (Term)other;
+			if(this == a || interned && a.interned) {
+				return this == a;
+			}
 			return coeff.equals(a.coeff) && Term.isLikeTerm(this, a);
 		} else if(other instanceof Expression) {
 			Expression a = (Expression)other;
@@ -489,7 +398,14 @@ public class Term implements Comparable<Term>, Serializable {
 	 */
 	@Override
 	public int hashCode() {
-		return undistr.hashCode() + vars.hashCode() + coeff.hashCode();
+		if(hash != 0) {
+			return hash;
+		}
+		int found = undistr.hashCode() + vars.hashCode() + coeff.hashCode();
+		if(interned) {
+			hash = found;
+		}
+		return found;
 	}
 
 	/*
@@ -498,12 +414,62 @@ public class Term implements Comparable<Term>, Serializable {
 	 */
 	@Override
 	public Term clone() {
-		Term a = new Term(coeff.clone());
-		a.addExponents(vars);
-		a.addExponent(undistr);
+		Term a = withCoeff(coeff);
+		a.vars = new Monomial(vars);
+		a.undistr = new TreeMap<>(undistr);
 		return a;
 	}
 
+	/**
+	 * Gets the canonical instance of this, which every equal Term that has been interned shares. Everything in its
+	 * undistr is interned as well. The canonical instance is a copy, so this may still be changed, and simplifyTerm throws
+	 * an UnsupportedOperationException on it.
+	 * @return The canonical Term equal to this.
+	 */
+	public Term intern() {
+		if(interned) {
+			return this;
+		}
+		return INTERNED.intern(this, found -> {
+			Term a = withCoeff(coeff);
+			a.vars = new Monomial(vars);
+			a.undistr = new TreeMap<>();
+			undistr.forEach((base, power) -> a.undistr.put(base.intern(), power.intern()));
+			a.interned = true;
+			return a;
+		});
+	}
+
+	/**
+	 * @return The table of interned Terms, to see how many there are and how often they are shared.
+	 */
+	public static Interner<Term> getInterner() {
+		return INTERNED;
+	}
+
+	/**
+	 * Makes a Term like this with a different coefficient. The new Term shares vars and undistr with this, so neither
+	 * may be changed afterwards; clone() it first if they need to be.
+	 * @param newCoeff The coefficient of the new Term.
+	 * @return newCoeff times everything in this other than its coefficient.
+	 */
+	Term withCoeff(Constant newCoeff) {
+		Term a = new Term();
+		a.coeff = newCoeff;
+		a.vars = vars;
+		a.undistr = undistr;
+		return a;
+	}
+
+	/**
+	 * Checks if this has a rational coefficient, no undistr and no i. The product of two such Terms is only their
+	 * coefficients and powers multiplied, with nothing left for simplifyTerm() to do.
+	 * @return If this is plain.
+	 */
+	boolean isPlain() {
+		return undistr.isEmpty() && coeff.isRat() && !vars.containsVar(interImag);
+	}
+
 	/**
 	 * Checks if the Term is a constant.
 	 * @return if the Term is an constant, true, else false.
@@ -518,70 +484,43 @@ public class Term implements Comparable<Term>, Serializable {
 	 */
 	@Override
 	public int compareTo(Term o) {
+		int compare = compareShape(o);
+		if(compare != 0) {
+			return compare;
+		}
+		// Larger coefficients go first. Only returns 0 if the coefficients are equal, so this agrees with equals.
+		compare = coeff.compareExactly(o.coeff);
+		return compare > 0 ? -1 : compare < 0 ? 1 : 0;
+	}
+
+	/**
+	 * Compares two Terms the same way as compareTo, but ignoring their coefficients. Terms which are sorted together
+	 * are ordered by this first, so all the Terms in a sorted list with the same vars and undistr are next to each other.
+	 * @param o The Term to compare to.
+	 * @return -1 if this goes first, 1 if o goes first, or 0 if they have the same vars and undistr.
+	 */
+	int compareShape(Term o) {
 		// Compares terms in a somewhat arbitrary order, first by which has the highest power, then by each power,
 		// then by undistr.
-		Constant varMax = vars.isEmpty() ? null : Collections.max(vars.values());
-		Constant oVarMax = o.vars.isEmpty() ? null : Collections.max(o.vars.values());
-		if(varMax != null) {
-			int compare = varMax.compareTo(oVarMax);
-			if(compare > 0) {
-				return -1;
-			}
-			if(compare < 0) {
-				return 1;
-			}
-			if(o.vars.size() > vars.size()) {
-				return 1;
-			}
-			Iterator<Entry<Character, Constant>> oVar = o.vars.entrySet().iterator();
-			Entry<Character, Constant> oCurrent;
-			for(Entry<Character, Constant> current : vars.entrySet()) {
-				if(!oVar.hasNext()) {
-					return -1;
-				}
-				oCurrent = oVar.next();
-				if(current.getKey() < oCurrent.getKey()) {
-					return -1;
-				}
-				if(current.getKey() > oCurrent.getKey()) {
-					return 1;
-				}
-				if(current.getValue().compareTo(oCurrent.getValue()) < 0) {
-					return -1;
-				}
-				if(current.getValue().compareTo(oCurrent.getValue()) > 0) {
-					return 1;
-				}
-			}
-			if(oVar.hasNext()) {
-				return 1;
-			}
-		} else if(oVarMax != null) {
-			return 1;
+		int compare = vars.compareOrder(o.vars);
+		if(compare != 0) {
+			return compare;
 		}
-		if(o.undistr.size() > undistr.size()) {
-			return 1;
+		if(o.undistr.size() != undistr.size()) {
+			return o.undistr.size() > undistr.size() ? 1 : -1;
 		}
 		Iterator<Entry<Expression, Expression>> oUndis = o.undistr.entrySet().iterator();
 		for(Entry<Expression, Expression> current : undistr.entrySet()) {
-			if(!oUndis.hasNext()) {
-				return -1;
-			}
 			Entry<Expression, Expression> oCurrent = oUndis.next();
-			if(current.getKey().compareTo(oCurrent.getKey()) < 0) {
-				return -1;
-			}
-			if(current.getKey().compareTo(oCurrent.getKey()) > 0) {
-				return 1;
-			}
-			if(current.getValue().compareTo(oCurrent.getValue()) < 0) {
-				return -1;
+			compare = current.getKey().compareTo(oCurrent.getKey());
+			if(compare == 0) {
+				compare = current.getValue().compareTo(oCurrent.getValue());
 			}
-			if(current.getValue().compareTo(oCurrent.getValue()) > 0) {
-				return 1;
+			if(compare != 0) {
+				return compare < 0 ? -1 : 1;
 			}
 		}
-		return coeff.compareTo(o.coeff) > 0 ? -1 : coeff.compareTo(o.coeff) < 0 ? 1 : 0;
+		return 0;
 	}
 
 	/**
@@ -593,8 +532,11 @@ public class Term implements Comparable<Term>, Serializable {
 	public Term multiply(Term b) {
 		Term a = clone();
 		a.coeff = a.coeff.multiply(b.coeff);
-		a.addExponents(b.vars);
-		a.addExponent(b.undistr);
+		a.vars.multiply(b.vars);
+		for(Entry<Expression, Expression> current : b.undistr.entrySet()) {
+			a.addExponent(current.getKey(), current.getValue());
+		}
+		a.simplifyTerm();
 		return a;
 	}
 
@@ -611,9 +553,7 @@ public class Term implements Comparable<Term>, Serializable {
 	 * @return -this
 	 */
 	public Term negate() {
-		Term c = clone();
-		c.coeff = c.coeff.negate();
-		return c;
+		return withCoeff(coeff.negate());
 	}
 
 	/**
@@ -633,9 +573,7 @@ public class Term implements Comparable<Term>, Serializable {
 		Term a = clone();
 		// raises all parts of this to b
 		a.coeff = a.coeff.raise(b);
-		for(Entry<Character, Constant> current : a.vars.entrySet()) {
-			current.setValue(current.getValue().multiply(b));
-		}
+		a.vars.multiplyPowers(b);
 		for(Entry<Expression, Expression> current : a.undistr.entrySet()) {
 			current.setValue(current.getValue().multiply(new Expression(new Term(b))));
 		}
@@ -660,6 +598,28 @@ public class Term implements Comparable<Term>, Serializable {
 		return var;
 	}
 
+	/**
+	 * Checks if a variable is in this, the same as getVars().contains(var) without making the set.
+	 * @param var The variable to look for.
+	 * @return If var is in this.
+	 */
+	boolean hasVar(char var) {
+		if(var == interImag || var == interE || var == PI) {
+			return false;
+		}
+		if(vars.containsVar(var)) {
+			return true;
+		}
+		for(Expression current : undistr.keySet()) {
+			for(Term curTerm : current.terms) {
+				if(curTerm.vars.containsVar(var)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -823,8 +783,62 @@ public class Term implements Comparable<Term>, Serializable {
 		for(Map.Entry<Integer, Constant> cur : retrn.coeff.getRoots().entrySet()) {
 			appro *= Math.pow(cur.getValue().doubleValue(), 1. / cur.getKey());
 		}
-		retrn.coeff.getRoots().clear();
-		retrn.coeff = retrn.coeff.multiply(new Constant(appro));
+		retrn.coeff = new Constant(retrn.coeff.getNumerator(), retrn.coeff.getDenominator()).multiply(new Constant(appro));
 		return retrn;
 	}
+
+	/**
+	 * The parts of a Term that decide which Terms it is like, its vars, undistr, and the roots of its coeff. The hash is
+	 * worked out once, so each Term only has to be hashed once when finding its like Terms.
+	 */
+	static final class LikeKey {
+		/**
+		 * The vars of the Term.
+		 */
+		private final Map<Character, Constant> vars;
+		/**
+		 * The undistr of the Term.
+		 */
+		private final Map<Expression, Expression> undistr;
+		/**
+		 * The roots of the coeff of the Term.
+		 */
+		private final Map<Integer, Constant> roots;
+		/**
+		 * The hash of vars, undistr and roots.
+		 */
+		private final int hash;
+
+		/**
+		 * @param term The Term to make the key of.
+		 */
+		private LikeKey(Term term) {
+			vars = term.vars;
+			undistr = term.undistr;
+			roots = term.coeff.getRoots();
+			hash = (vars.hashCode() * 31 + undistr.hashCode()) * 31 + roots.hashCode();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof LikeKey)) {
+				return false;
+			}
+			LikeKey a = (LikeKey)other;
+			return hash == a.hash && roots.equals(a.roots) && vars.equals(a.vars) && undistr.equals(a.undistr);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
 }